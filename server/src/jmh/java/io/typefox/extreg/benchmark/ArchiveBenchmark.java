@@ -0,0 +1,107 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.typefox.extreg.util.ArchiveIndex;
+import io.typefox.extreg.util.ArchiveUtil;
+
+/**
+ * Compares ways of reading the package.json, readme and icon entries of a package.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ArchiveBenchmark {
+
+    private static final String[] ENTRIES = {
+        SyntheticExtension.PACKAGE_JSON_PATH, SyntheticExtension.README_PATH, SyntheticExtension.ICON_PATH
+    };
+
+    @Param({ "10", "1000" })
+    int entryCount;
+
+    // 100 KB and 10 MB
+    @Param({ "102400", "10485760" })
+    int packageSize;
+
+    private byte[] content;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        content = SyntheticExtension.create(entryCount, packageSize, 256);
+        file = Files.createTempFile("ovsx-benchmark", ".vsix");
+        Files.write(file, content);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Scan the archive in memory once for each entry.
+     */
+    @Benchmark
+    public void readEntryPerLookup(Blackhole blackhole) {
+        for (var entry : ENTRIES) {
+            blackhole.consume(ArchiveUtil.readEntry(content, entry));
+        }
+    }
+
+    /**
+     * Scan the archive in memory once for all entries.
+     */
+    @Benchmark
+    public Map<String, byte[]> readEntriesSinglePass() {
+        return ArchiveUtil.readEntries(content, Arrays.asList(ENTRIES));
+    }
+
+    /**
+     * Open the archive file and look up each entry by its exact name.
+     */
+    @Benchmark
+    public void zipFileLookup(Blackhole blackhole) throws IOException {
+        try (var zipFile = new ZipFile(file.toFile())) {
+            for (var entry : ENTRIES) {
+                blackhole.consume(ArchiveUtil.readEntry(zipFile, entry));
+            }
+        }
+    }
+
+    /**
+     * Open the archive file and look up the entries in an index of their normalized names.
+     */
+    @Benchmark
+    public void archiveIndex(Blackhole blackhole) throws IOException {
+        try (var zipFile = new ZipFile(file.toFile())) {
+            var index = new ArchiveIndex(zipFile);
+            for (var entry : ENTRIES) {
+                blackhole.consume(index.readEntry(entry));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.typefox.extreg.ExtensionProcessor;
+import io.typefox.extreg.entities.ExtensionIcon;
+import io.typefox.extreg.entities.ExtensionReadme;
+import io.typefox.extreg.entities.ExtensionVersion;
+import io.typefox.extreg.storage.BenchmarkStorage;
+import io.typefox.extreg.storage.FileStorage;
+import io.typefox.extreg.storage.ScratchDirectory;
+import io.typefox.extreg.storage.ScratchSpaceService;
+
+/**
+ * Measures the steps of processing an uploaded extension package.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExtensionProcessorBenchmark {
+
+    @Param({ "10", "1000" })
+    int entryCount;
+
+    // 100 KB and 10 MB
+    @Param({ "102400", "10485760" })
+    int packageSize;
+
+    @Param({ "128", "1024" })
+    int iconSize;
+
+    byte[] content;
+    ScratchSpaceService scratchSpace;
+    FileStorage storage;
+    private Path scratchPath;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        content = SyntheticExtension.create(entryCount, packageSize, iconSize);
+        scratchPath = Files.createTempDirectory("ovsx-benchmark");
+        scratchSpace = BenchmarkStorage.createScratchSpace(scratchPath);
+        storage = BenchmarkStorage.createDiscardingStorage();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(scratchPath);
+    }
+
+    /**
+     * A processor that has just been created for the package. The per-invocation setup is not
+     * measured, and the measured operations take long enough for its overhead not to matter.
+     */
+    @State(Scope.Thread)
+    public static class OpenProcessor {
+
+        ScratchDirectory scratchDirectory;
+        ExtensionProcessor processor;
+
+        @Setup(Level.Invocation)
+        public void open(ExtensionProcessorBenchmark benchmark) {
+            scratchDirectory = benchmark.scratchSpace.createDirectory();
+            processor = new ExtensionProcessor(new ByteArrayInputStream(benchmark.content), scratchDirectory, benchmark.storage);
+        }
+
+        @TearDown(Level.Invocation)
+        public void close() {
+            processor.close();
+            scratchDirectory.close();
+        }
+
+    }
+
+    @Benchmark
+    public void construct() {
+        try (
+            var scratchDirectory = scratchSpace.createDirectory();
+            var processor = new ExtensionProcessor(new ByteArrayInputStream(content), scratchDirectory, storage)
+        ) {
+            // Only creating and closing the processor is measured
+        }
+    }
+
+    @Benchmark
+    public ExtensionVersion getMetadata(OpenProcessor state) {
+        return state.processor.getMetadata();
+    }
+
+    @Benchmark
+    public ExtensionReadme storeReadme(OpenProcessor state) {
+        return state.processor.storeReadme();
+    }
+
+    @Benchmark
+    public ExtensionIcon storeIcon(OpenProcessor state) {
+        return state.processor.storeIcon();
+    }
+
+}
@@ -0,0 +1,98 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Generates extension packages with a given number of entries, total size and icon size.
+ * The content is random, but the same parameters always produce the same package.
+ */
+public final class SyntheticExtension {
+
+    public static final String ICON_PATH = "extension/images/icon.png";
+    public static final String README_PATH = "extension/README.md";
+    public static final String PACKAGE_JSON_PATH = "extension/package.json";
+
+    private SyntheticExtension() {}
+
+    public static byte[] create(int entryCount, int packageSize, int iconSize) throws IOException {
+        var random = new Random(entryCount * 31 + packageSize * 17 + iconSize);
+        var bytes = new ByteArrayOutputStream(packageSize);
+        try (var zip = new ZipOutputStream(bytes)) {
+            // Random content does not compress, so the package gets about the requested size
+            var fileSize = Math.max(1, packageSize / Math.max(1, entryCount));
+            for (int i = 0; i < entryCount; i++) {
+                var content = new byte[fileSize];
+                random.nextBytes(content);
+                writeEntry(zip, "extension/out/file" + i + ".js", content);
+            }
+            // Put the entries read by the registry last, so sequential scans have to pass all others
+            writeEntry(zip, PACKAGE_JSON_PATH, createPackageJson().getBytes(StandardCharsets.UTF_8));
+            writeEntry(zip, README_PATH, createReadme(random, Math.max(1024, packageSize / 20)));
+            writeEntry(zip, ICON_PATH, createIcon(random, iconSize));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private static String createPackageJson() {
+        return "{\n"
+                + "  \"name\": \"synthetic\",\n"
+                + "  \"publisher\": \"benchmark\",\n"
+                + "  \"version\": \"1.0.0\",\n"
+                + "  \"displayName\": \"Synthetic Extension\",\n"
+                + "  \"description\": \"Generated for benchmarks\",\n"
+                + "  \"categories\": [\"Other\"],\n"
+                + "  \"keywords\": [\"benchmark\", \"synthetic\"],\n"
+                + "  \"license\": \"EPL-2.0\",\n"
+                + "  \"icon\": \"images/icon.png\",\n"
+                + "  \"repository\": { \"type\": \"git\", \"url\": \"https://example.com/synthetic.git\" },\n"
+                + "  \"extensionDependencies\": [\"benchmark.dependency\"]\n"
+                + "}\n";
+    }
+
+    private static byte[] createReadme(Random random, int size) {
+        var words = new String[] { "extension", "registry", "publish", "the", "a", "of", "version", "\n\n## Section\n\n" };
+        var readme = new StringBuilder("# Synthetic Extension\n\n");
+        while (readme.length() < size) {
+            readme.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return readme.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] createIcon(Random random, int size) throws IOException {
+        var image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                // A gradient with some noise, which compresses like a typical icon
+                var noise = random.nextInt(16);
+                var red = Math.min(255, x * 255 / size + noise);
+                var green = y * 255 / size;
+                image.setRGB(x, y, 0xff000000 | red << 16 | green << 8 | noise * 8);
+            }
+        }
+        var bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        return bytes.toByteArray();
+    }
+
+}
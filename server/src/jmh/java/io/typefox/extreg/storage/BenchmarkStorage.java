@@ -0,0 +1,68 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.typefox.extreg.entities.FileResource;
+
+/**
+ * Storage components for benchmarks, created without an application context.
+ */
+public final class BenchmarkStorage {
+
+    private BenchmarkStorage() {}
+
+    public static ScratchSpaceService createScratchSpace(Path path) throws IOException {
+        var scratchSpace = new ScratchSpaceService();
+        scratchSpace.scratchPath = path.toString();
+        scratchSpace.quotaBytes = Long.MAX_VALUE / 2;
+        scratchSpace.meterRegistry = new SimpleMeterRegistry();
+        scratchSpace.init();
+        return scratchSpace;
+    }
+
+    /**
+     * Create a file storage that computes hashes like the real implementations,
+     * but discards the content. Loading a file yields empty content.
+     */
+    public static FileStorage createDiscardingStorage() {
+        return new FileStorage() {
+            @Override
+            public void store(FileResource resource, InputStream content) {
+                try {
+                    var hashingStream = new HashingInputStream(Hashing.sha256(), content);
+                    resource.setSize(hashingStream.transferTo(OutputStream.nullOutputStream()));
+                    resource.setHash(hashingStream.hash().toString());
+                } catch (IOException exc) {
+                    throw new RuntimeException(exc);
+                }
+            }
+
+            @Override
+            public void store(FileResource resource, Path file) {
+            }
+
+            @Override
+            public Resource load(FileResource resource) {
+                return new ByteArrayResource(new byte[0]);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,175 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import io.typefox.extreg.json.BatchPublishResultJson;
+import io.typefox.extreg.json.ExtensionJson;
+import io.typefox.extreg.storage.FileStorage;
+import io.typefox.extreg.storage.FileVariantService;
+import io.typefox.extreg.storage.ScratchDirectory;
+import io.typefox.extreg.storage.ScratchSpaceService;
+import io.typefox.extreg.util.ErrorResultException;
+
+/**
+ * Publishes many extension packages at once. The packages are processed in groups: the
+ * packages of a group are extracted and their files stored in parallel, then they are
+ * persisted in one transaction with a bulk update of the search index.
+ */
+@Component
+public class BatchPublishService {
+
+    // Persist this many packages in each transaction
+    private static final int GROUP_SIZE = 20;
+
+    Logger logger = LoggerFactory.getLogger(BatchPublishService.class);
+
+    @Autowired
+    LocalRegistryService local;
+
+    @Autowired
+    ScratchSpaceService scratchSpace;
+
+    @Autowired
+    FileStorage storage;
+
+    @Autowired
+    FileVariantService variants;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new ThreadFactoryBuilder().setNameFormat("batch-publish-%d").build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public BatchPublishResultJson publish(List<MultipartFile> files) {
+        var results = new ExtensionJson[files.size()];
+        // Only one group is extracted at a time, which limits the scratch space and open files in use
+        for (int start = 0; start < files.size(); start += GROUP_SIZE) {
+            publishGroup(files, start, Math.min(start + GROUP_SIZE, files.size()), results);
+        }
+        var json = new BatchPublishResultJson();
+        json.results = Arrays.asList(results);
+        return json;
+    }
+
+    private void publishGroup(List<MultipartFile> files, int start, int end, ExtensionJson[] results) {
+        var directories = new ArrayList<ScratchDirectory>(end - start);
+        var futures = new ArrayList<Future<ExtensionProcessor>>(end - start);
+        try {
+            for (int i = start; i < end; i++) {
+                var file = files.get(i);
+                var scratchDirectory = scratchSpace.createDirectory();
+                directories.add(scratchDirectory);
+                futures.add(executor.submit(() -> extract(file, scratchDirectory)));
+            }
+
+            var group = new ArrayList<ExtensionProcessor>(end - start);
+            var groupIndices = new ArrayList<Integer>(end - start);
+            for (int i = start; i < end; i++) {
+                try {
+                    group.add(futures.get(i - start).get());
+                    groupIndices.add(i);
+                } catch (ExecutionException exc) {
+                    results[i] = toError(files.get(i), exc.getCause());
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    results[i] = ExtensionJson.error("Interrupted while processing " + files.get(i).getOriginalFilename());
+                }
+            }
+            if (!group.isEmpty())
+                persist(group, groupIndices, results);
+        } finally {
+            // Wait for all extractions of the group, so no directory is deleted while it is in use
+            for (var future : futures) {
+                var processor = drain(future);
+                if (processor != null)
+                    processor.close();
+            }
+            directories.forEach(ScratchDirectory::close);
+        }
+    }
+
+    private ExtensionProcessor drain(Future<ExtensionProcessor> future) {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException | CancellationException exc) {
+            return null;
+        }
+    }
+
+    private ExtensionProcessor extract(MultipartFile file, ScratchDirectory scratchDirectory) throws Exception {
+        try (var stream = file.getInputStream()) {
+            var processor = new ExtensionProcessor(stream, scratchDirectory, storage);
+            try {
+                // Parse the metadata and store the files while still running in parallel,
+                // so the transaction of the group only needs to persist the entities
+                local.checkNotPublished(processor);
+                processor.storeFiles(variants);
+                return processor;
+            } catch (RuntimeException exc) {
+                processor.close();
+                throw exc;
+            }
+        }
+    }
+
+    private void persist(List<ExtensionProcessor> group, List<Integer> groupIndices, ExtensionJson[] results) {
+        try {
+            var groupResults = local.publishAll(group);
+            for (int j = 0; j < groupResults.size(); j++) {
+                results[groupIndices.get(j)] = groupResults.get(j);
+            }
+        } catch (RuntimeException exc) {
+            // The transaction of the whole group has been rolled back. The stored files are
+            // left in the file storage, see FileStorage for the reasons
+            logger.error("Failed to publish a group of extensions", exc);
+            var hashes = group.stream().flatMap(processor -> processor.getStoredHashes().stream())
+                    .distinct().collect(Collectors.joining(", "));
+            logger.warn("Files stored for the failed group that may be unreferenced: " + hashes);
+            for (var index : groupIndices) {
+                results[index] = ExtensionJson.error("Internal error: " + exc.getMessage());
+            }
+        }
+    }
+
+    private ExtensionJson toError(MultipartFile file, Throwable cause) {
+        if (!(cause instanceof ErrorResultException))
+            logger.error("Failed to extract " + file.getOriginalFilename(), cause);
+        return ExtensionJson.error(file.getOriginalFilename() + ": " + cause.getMessage());
+    }
+
+}
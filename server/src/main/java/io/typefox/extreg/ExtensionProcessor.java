@@ -7,9 +7,11 @@
  ********************************************************************************/
 package io.typefox.extreg;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -19,14 +21,22 @@ import java.util.zip.ZipFile;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
 import com.google.common.io.ByteStreams;
-import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+
+import org.springframework.http.MediaType;
 
 import io.typefox.extreg.entities.ExtensionBinary;
 import io.typefox.extreg.entities.ExtensionIcon;
 import io.typefox.extreg.entities.ExtensionReadme;
 import io.typefox.extreg.entities.ExtensionVersion;
-import io.typefox.extreg.util.ArchiveUtil;
+import io.typefox.extreg.entities.FileVariant;
+import io.typefox.extreg.storage.FileStorage;
+import io.typefox.extreg.storage.FileVariantService;
+import io.typefox.extreg.storage.ScratchDirectory;
+import io.typefox.extreg.util.ArchiveIndex;
 import io.typefox.extreg.util.ErrorResultException;
 
 /**
@@ -38,16 +48,41 @@ public class ExtensionProcessor implements AutoCloseable {
     private static final String README = "extension/README";
     private static final String README_MD = "extension/README.md";
 
-    private final byte[] content;
+    // Limit the size of uploaded extension packages to 512 MB
+    private static final long MAX_PACKAGE_SIZE = 536_870_912;
+
+    private final Path file;
+    private final String hash;
+    private final long size;
     private final ZipFile zipFile;
+    private final ArchiveIndex archiveIndex;
+    private final FileStorage storage;
     private JsonNode packageJson;
+    private ExtensionVersion metadata;
+    private ExtensionBinary binary;
+    private ExtensionReadme readme;
+    private ExtensionIcon icon;
+    private boolean readmeStored;
+    private boolean iconStored;
+    private List<FileVariant> variants;
+    private final List<String> storedHashes = new ArrayList<>();
 
-    public ExtensionProcessor(InputStream stream) {
+    /**
+     * Create a processor for an uploaded extension package. The package is written to the
+     * given scratch directory, which must be kept open until the processor is closed.
+     */
+    public ExtensionProcessor(InputStream stream, ScratchDirectory scratchDirectory, FileStorage storage) {
+        this.storage = storage;
         try {
-            content = ByteStreams.toByteArray(stream);
-            var tempFile = File.createTempFile("extension_", ".vsix");
-            Files.write(content, tempFile);
-            zipFile = new ZipFile(tempFile);
+            // The upload is read only once: it is written to a file while its hash is computed
+            var hashingStream = new HashingInputStream(Hashing.sha256(), ByteStreams.limit(stream, MAX_PACKAGE_SIZE + 1));
+            file = scratchDirectory.write("extension.vsix", hashingStream);
+            size = Files.size(file);
+            if (size > MAX_PACKAGE_SIZE)
+                throw new ErrorResultException("The extension package exceeds the size limit of 512 MB.");
+            hash = hashingStream.hash().toString();
+            zipFile = new ZipFile(file.toFile());
+            archiveIndex = new ArchiveIndex(zipFile);
         } catch (ZipException exc) {
             throw new ErrorResultException("Could not read zip file: " + exc.getMessage());
 		} catch (IOException exc) {
@@ -55,6 +90,34 @@ public class ExtensionProcessor implements AutoCloseable {
 		}
     }
 
+    /**
+     * Create a processor for an extension package that has already been received, such as
+     * a queued upload. The file must be kept in place until the processor is closed.
+     */
+    public ExtensionProcessor(Path file, FileStorage storage) {
+        this.storage = storage;
+        this.file = file;
+        try {
+            size = Files.size(file);
+            if (size > MAX_PACKAGE_SIZE)
+                throw new ErrorResultException("The extension package exceeds the size limit of 512 MB.");
+            hash = MoreFiles.asByteSource(file).hash(Hashing.sha256()).toString();
+            zipFile = new ZipFile(file.toFile());
+            archiveIndex = new ArchiveIndex(zipFile);
+        } catch (ZipException exc) {
+            throw new ErrorResultException("Could not read zip file: " + exc.getMessage());
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+    /**
+     * The extension package file, which is owned by the creator of this processor.
+     */
+    public Path getFile() {
+        return file;
+    }
+
 	@Override
 	public void close() {
         if (zipFile != null) {
@@ -68,7 +131,7 @@ public class ExtensionProcessor implements AutoCloseable {
 
     private void loadPackageJson() {
         if (packageJson == null) {
-            var bytes = ArchiveUtil.readEntry(zipFile, PACKAGE_JSON);
+            var bytes = archiveIndex.readEntry(PACKAGE_JSON);
             if (bytes == null)
                 throw new ErrorResultException("Entry not found: " + PACKAGE_JSON);
             try {
@@ -105,7 +168,13 @@ public class ExtensionProcessor implements AutoCloseable {
         return result != null ? result : Collections.emptyList();
     }
 
+    /**
+     * Return the version entity described by the package. It is created only once, and the
+     * files of the package are attached to it.
+     */
     public ExtensionVersion getMetadata() {
+        if (metadata != null)
+            return metadata;
         loadPackageJson();
         var extension = new ExtensionVersion();
         extension.setVersion(packageJson.path("version").textValue());
@@ -125,6 +194,7 @@ public class ExtensionProcessor implements AutoCloseable {
             extension.setGalleryTheme(galleryBanner.path("theme").textValue());
         }
         extension.setQna(packageJson.path("qna").textValue());
+        metadata = extension;
         return extension;
     }
 
@@ -148,46 +218,146 @@ public class ExtensionProcessor implements AutoCloseable {
         return null;
     }
 
-    public ExtensionBinary getBinary(ExtensionVersion extension) {
-        var binary = new ExtensionBinary();
-        binary.setExtension(extension);
-        binary.setContent(content);
+    /**
+     * Store the files of the package and their variants. No transaction is needed for this,
+     * so it can be done before publishing; the returned variants are not persisted yet.
+     */
+    public List<FileVariant> storeFiles(FileVariantService variantService) {
+        if (variants == null) {
+            var result = new ArrayList<FileVariant>();
+            storeBinary();
+            var readme = storeReadme();
+            if (readme != null) {
+                var gzipVariant = variantService.storeGzipVariant(readme);
+                if (gzipVariant != null)
+                    result.add(gzipVariant);
+            }
+            var icon = storeIcon();
+            if (icon != null)
+                result.addAll(variantService.storeIconRenditions(icon));
+            for (var variant : result) {
+                storedHashes.add(variant.getHash());
+            }
+            variants = result;
+        }
+        return variants;
+    }
+
+    /**
+     * The hashes of all contents written to the file storage by this processor, including
+     * contents that were already present in the storage.
+     */
+    public List<String> getStoredHashes() {
+        return Collections.unmodifiableList(storedHashes);
+    }
+
+    /**
+     * Store the package file, unless it has been stored already.
+     */
+    public ExtensionBinary storeBinary() {
+        if (binary == null) {
+            var binary = new ExtensionBinary();
+            binary.setExtension(getMetadata());
+            binary.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            binary.setHash(hash);
+            binary.setSize(size);
+            storage.store(binary, file);
+            storedHashes.add(hash);
+            this.binary = binary;
+        }
         return binary;
     }
 
-    public ExtensionReadme getReadme(ExtensionVersion extension) {
+    /**
+     * Store the readme of the package and record its file name in the version, unless this
+     * has been done already. Returns {@code null} if the package has no readme.
+     */
+    public ExtensionReadme storeReadme() {
+        if (!readmeStored) {
+            readme = loadReadme(getMetadata());
+            if (readme != null)
+                storedHashes.add(readme.getHash());
+            readmeStored = true;
+        }
+        return readme;
+    }
+
+    /**
+     * Store the icon of the package and record its file name in the version, unless this
+     * has been done already. Returns {@code null} if the package has no icon.
+     */
+    public ExtensionIcon storeIcon() {
+        if (!iconStored) {
+            icon = loadIcon(getMetadata());
+            if (icon != null)
+                storedHashes.add(icon.getHash());
+            iconStored = true;
+        }
+        return icon;
+    }
+
+    /**
+     * Return the binary entity, which must have been stored with {@link #storeFiles}.
+     */
+    public ExtensionBinary getBinary() {
+        if (binary == null)
+            throw new IllegalStateException("The package file has not been stored.");
+        return binary;
+    }
+
+    /**
+     * Return the readme entity, which must have been stored with {@link #storeFiles}.
+     */
+    public ExtensionReadme getReadme() {
+        if (!readmeStored)
+            throw new IllegalStateException("The readme has not been stored.");
+        return readme;
+    }
+
+    /**
+     * Return the icon entity, which must have been stored with {@link #storeFiles}.
+     */
+    public ExtensionIcon getIcon() {
+        if (!iconStored)
+            throw new IllegalStateException("The icon has not been stored.");
+        return icon;
+    }
+
+    private ExtensionReadme loadReadme(ExtensionVersion extension) {
         var fileName = "README.md";
-        var bytes = ArchiveUtil.readEntry(zipFile, README_MD);
+        var bytes = archiveIndex.readEntry(README_MD);
         if (bytes == null) {
             fileName = "README";
-            bytes = ArchiveUtil.readEntry(zipFile, README);
+            bytes = archiveIndex.readEntry(README);
         }
         if (bytes == null)
             return null;
         var readme = new ExtensionReadme();
         readme.setExtension(extension);
-        readme.setContent(bytes);
+        readme.setContentType(FileContent.guessContentType(fileName).toString());
+        storage.store(readme, new ByteArrayInputStream(bytes));
         extension.setReadmeFileName(fileName);
         return readme;
     }
 
-    public ExtensionIcon getIcon(ExtensionVersion extension) {
+    private ExtensionIcon loadIcon(ExtensionVersion extension) {
         loadPackageJson();
         var iconPath = packageJson.get("icon");
         if (iconPath == null || !iconPath.isTextual())
             return null;
         var iconPathStr = iconPath.asText().replace('\\', '/');
-        var bytes = ArchiveUtil.readEntry(zipFile, "extension/" + iconPathStr);
+        var bytes = archiveIndex.readEntry("extension/" + iconPathStr);
         if (bytes == null)
             return null;
         var icon = new ExtensionIcon();
         icon.setExtension(extension);
-        icon.setContent(bytes);
         var fileNameIndex = iconPathStr.lastIndexOf('/');
         if (fileNameIndex >= 0)
             extension.setIconFileName(iconPathStr.substring(fileNameIndex + 1));
         else
             extension.setIconFileName(iconPathStr);
+        icon.setContentType(FileContent.guessContentType(extension.getIconFileName()).toString());
+        storage.store(icon, new ByteArrayInputStream(bytes));
         return icon;
     }
 
@@ -0,0 +1,166 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg;
+
+import java.net.URLConnection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+
+/**
+ * A file provided by a registry. The content is read from the resource
+ * only while it is written to the response, so it is never held in memory
+ * as a whole.
+ */
+public class FileContent {
+
+    /**
+     * Derive the media type of a file from its name.
+     */
+    public static MediaType guessContentType(String fileName) {
+        if (fileName.endsWith(".vsix"))
+            return MediaType.APPLICATION_OCTET_STREAM;
+        var contentType = URLConnection.guessContentTypeFromName(fileName);
+        if (contentType != null)
+            return MediaType.parseMediaType(contentType);
+        return MediaType.TEXT_PLAIN;
+    }
+
+    private final Resource resource;
+    private final long contentLength;
+    private final MediaType contentType;
+    private String contentEncoding;
+    private String eTag;
+    private long lastModified = -1;
+    private Map<String, FileContent> encodings;
+    private TreeMap<Integer, FileContent> renditions;
+
+    public FileContent(Resource resource, long contentLength, @Nullable MediaType contentType) {
+        this.resource = resource;
+        this.contentLength = contentLength;
+        this.contentType = contentType;
+    }
+
+    public Resource getResource() {
+        return resource;
+    }
+
+    /**
+     * The length of the content in bytes, or -1 if it is not known in advance.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * The media type of the content, or {@code null} if it should be derived from the file name.
+     */
+    @Nullable
+    public MediaType getContentType() {
+        return contentType;
+    }
+
+    /**
+     * The encoding that has been applied to the content, e.g. {@code gzip},
+     * or {@code null} if the content is not encoded.
+     */
+    @Nullable
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * An entity tag of the content, or {@code null} if none is known.
+     */
+    @Nullable
+    public String getETag() {
+        return eTag;
+    }
+
+    public void setETag(String eTag) {
+        this.eTag = eTag;
+    }
+
+    /**
+     * The last modification time in milliseconds since the epoch, or -1 if it is not known.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Return an alternative representation of this file with the given content encoding,
+     * or {@code null} if there is none.
+     */
+    @Nullable
+    public FileContent getEncoding(String encoding) {
+        if (encodings == null)
+            return null;
+        return encodings.get(encoding);
+    }
+
+    public boolean hasEncodings() {
+        return encodings != null && !encodings.isEmpty();
+    }
+
+    public Collection<FileContent> getEncodings() {
+        if (encodings == null)
+            return Collections.emptyList();
+        return Collections.unmodifiableCollection(encodings.values());
+    }
+
+    public void addEncoding(FileContent encoded) {
+        if (encodings == null)
+            encodings = new LinkedHashMap<>();
+        encodings.put(encoded.getContentEncoding(), encoded);
+    }
+
+    /**
+     * Return the smallest image rendition of this file that is at least as large as
+     * the requested size, or this file itself if there is no such rendition.
+     */
+    public FileContent getRendition(int size) {
+        if (renditions == null)
+            return this;
+        var entry = renditions.ceilingEntry(size);
+        if (entry == null)
+            return this;
+        return entry.getValue();
+    }
+
+    /**
+     * Return all image renditions of this file, mapped by their size.
+     */
+    public Map<Integer, FileContent> getRenditions() {
+        if (renditions == null)
+            return Collections.emptyMap();
+        return Collections.unmodifiableMap(renditions);
+    }
+
+    public void addRendition(int size, FileContent rendition) {
+        if (renditions == null)
+            renditions = new TreeMap<>();
+        renditions.put(size, rendition);
+    }
+
+}
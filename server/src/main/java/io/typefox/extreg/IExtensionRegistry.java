@@ -23,9 +23,9 @@ public interface IExtensionRegistry {
 
     ExtensionJson getExtension(String publisherName, String extensionName, String version);
 
-    byte[] getFile(String publisherName, String extensionName, String fileName);
+    FileContent getFile(String publisherName, String extensionName, String fileName);
 
-    byte[] getFile(String publisherName, String extensionName, String version, String fileName);
+    FileContent getFile(String publisherName, String extensionName, String version, String fileName);
 
     ReviewListJson getReviews(String publisherName, String extensionName);
 
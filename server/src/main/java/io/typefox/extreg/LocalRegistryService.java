@@ -9,38 +9,36 @@ package io.typefox.extreg;
 
 import static io.typefox.extreg.util.UrlUtil.createApiUrl;
 
-import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
+import javax.annotation.Nullable;
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 
-import com.google.common.base.Strings;
-import com.google.common.collect.Iterables;
-
-import org.elasticsearch.common.unit.Fuzziness;
-import org.elasticsearch.index.query.QueryBuilders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationStartedEvent;
 import org.springframework.context.event.EventListener;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
-import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import io.typefox.extreg.entities.Extension;
+import io.typefox.extreg.entities.ExtensionIcon;
+import io.typefox.extreg.entities.ExtensionReadme;
 import io.typefox.extreg.entities.ExtensionReview;
 import io.typefox.extreg.entities.ExtensionVersion;
 import io.typefox.extreg.entities.FileResource;
@@ -52,8 +50,18 @@ import io.typefox.extreg.json.ReviewListJson;
 import io.typefox.extreg.json.ReviewResultJson;
 import io.typefox.extreg.json.SearchEntryJson;
 import io.typefox.extreg.json.SearchResultJson;
+import io.typefox.extreg.json.SuggestionListJson;
 import io.typefox.extreg.repositories.RepositoryService;
 import io.typefox.extreg.search.ExtensionSearch;
+import io.typefox.extreg.search.SearchCacheService;
+import io.typefox.extreg.search.SearchCursor;
+import io.typefox.extreg.search.SearchIndexDispatcher;
+import io.typefox.extreg.search.SearchIndexRebuilder;
+import io.typefox.extreg.search.SearchService;
+import io.typefox.extreg.search.SuggestionService;
+import io.typefox.extreg.storage.FileCacheService;
+import io.typefox.extreg.storage.FileStorage;
+import io.typefox.extreg.storage.FileVariantService;
 import io.typefox.extreg.util.CollectionUtil;
 import io.typefox.extreg.util.ErrorResultException;
 import io.typefox.extreg.util.NotFoundException;
@@ -62,6 +70,8 @@ import io.typefox.extreg.util.SemanticVersion;
 @Component
 public class LocalRegistryService implements IExtensionRegistry {
  
+    private static final int VERSION_KEY_BATCH_SIZE = 500;
+
     Logger logger = LoggerFactory.getLogger(LocalRegistryService.class);
 
     @Autowired
@@ -71,7 +81,31 @@ public class LocalRegistryService implements IExtensionRegistry {
     RepositoryService repositories;
 
     @Autowired
-    ElasticsearchOperations searchOperations;
+    TransactionTemplate transactions;
+
+    @Autowired
+    SearchService searchService;
+
+    @Autowired
+    SearchCacheService searchCache;
+
+    @Autowired
+    SearchIndexDispatcher searchIndex;
+
+    @Autowired
+    SearchIndexRebuilder searchIndexRebuilder;
+
+    @Autowired
+    SuggestionService suggestions;
+
+    @Autowired
+    FileStorage storage;
+
+    @Autowired
+    FileVariantService variants;
+
+    @Autowired
+    FileCacheService fileCache;
 
     @Value("#{environment.OVSX_SERVER_URL}")
     String serverUrl;
@@ -109,37 +143,78 @@ public class LocalRegistryService implements IExtensionRegistry {
         return json;
     }
 
-    @Override
-    public byte[] getFile(String publisherName, String extensionName, String fileName) {
-        var extension = repositories.findExtension(extensionName, publisherName);
-        if (extension == null)
+    /**
+     * Return the package file name of the given version, or of the latest version if the
+     * version is {@code null}. This needs a single query.
+     */
+    public String getExtensionFileName(String publisherName, String extensionName, @Nullable String version) {
+        var fileName = repositories.findExtensionFileName(version, extensionName, publisherName);
+        if (fileName == null)
             throw new NotFoundException();
-        var extVersion = extension.getLatest();
-        var resource = getFile(extVersion, fileName);
-        if (resource == null)
-            throw new NotFoundException();
-        return resource.getContent();
+        return fileName;
     }
 
     @Override
-    public byte[] getFile(String publisherName, String extensionName, String version, String fileName) {
-        var extVersion = repositories.findVersion(version, extensionName, publisherName);
-        if (extVersion == null)
-            throw new NotFoundException();
-        var resource = getFile(extVersion, fileName);
-        if (resource == null)
-            throw new NotFoundException();
-        return resource.getContent();
+    public FileContent getFile(String publisherName, String extensionName, String fileName) {
+        return fileCache.get(publisherName, extensionName, null, fileName, () -> {
+            var extension = repositories.findExtension(extensionName, publisherName);
+            if (extension == null)
+                throw new NotFoundException();
+            var extVersion = extension.getLatest();
+            var resource = getFile(extVersion, fileName);
+            if (resource == null)
+                throw new NotFoundException();
+            return toFileContent(resource, extVersion);
+        });
+    }
+
+    @Override
+    public FileContent getFile(String publisherName, String extensionName, String version, String fileName) {
+        return fileCache.get(publisherName, extensionName, version, fileName, () -> {
+            var extVersion = repositories.findVersion(version, extensionName, publisherName);
+            if (extVersion == null)
+                throw new NotFoundException();
+            var resource = getFile(extVersion, fileName);
+            if (resource == null)
+                throw new NotFoundException();
+            return toFileContent(resource, extVersion);
+        });
     }
 
     private FileResource getFile(ExtensionVersion extVersion, String fileName) {
+        FileResource resource = null;
         if (fileName.equals(extVersion.getExtensionFileName()))
-            return repositories.findBinary(extVersion);
-        if (fileName.equals(extVersion.getReadmeFileName()))
-            return repositories.findReadme(extVersion);
-        if (fileName.equals(extVersion.getIconFileName()))
-            return repositories.findIcon(extVersion);
-        return null;
+            resource = repositories.findBinary(extVersion);
+        else if (fileName.equals(extVersion.getReadmeFileName()))
+            resource = repositories.findReadme(extVersion);
+        else if (fileName.equals(extVersion.getIconFileName()))
+            resource = repositories.findIcon(extVersion);
+        // Legacy files without a hash are not available until LegacyContentMigration has moved them
+        if (resource == null || resource.getHash() == null)
+            return null;
+        return resource;
+    }
+
+    private FileContent toFileContent(FileResource resource, ExtensionVersion extVersion) {
+        var contentType = resource.getContentType() != null ? MediaType.parseMediaType(resource.getContentType()) : null;
+        var file = new FileContent(storage.load(resource), resource.getSize(), contentType);
+        // The content hash is computed when the file is published, so it can serve as entity tag
+        file.setETag("\"" + resource.getHash() + "\"");
+        file.setLastModified(extVersion.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli());
+        if (resource instanceof ExtensionReadme || resource instanceof ExtensionIcon) {
+            for (var variant : repositories.findFileVariants(resource.getHash())) {
+                var variantFile = toFileContent(variant, extVersion);
+                if (FileVariantService.GZIP.equals(variant.getVariant())) {
+                    variantFile.setContentEncoding(FileVariantService.GZIP);
+                    file.addEncoding(variantFile);
+                } else {
+                    var renditionSize = FileVariantService.getIconRenditionSize(variant);
+                    if (renditionSize > 0)
+                        file.addRendition(renditionSize, variantFile);
+                }
+            }
+        }
+        return file;
     }
 
     @Override
@@ -156,179 +231,270 @@ public class LocalRegistryService implements IExtensionRegistry {
     }
 
     @EventListener
-    @Transactional
     public void initSearchIndex(ApplicationStartedEvent event) {
-        searchOperations.createIndex(ExtensionSearch.class);
+        searchService.createIndex();
         if (event.getApplicationContext().getEnvironment().getProperty("OVSX_INIT_SEARCH_INDEX") != null) {
-            logger.info("Initializing search index...");
-            var allExtensions = repositories.findAllExtensions();
-            if (!allExtensions.isEmpty()) {
-                var indexQueries = allExtensions.map(extension ->
-                    new IndexQueryBuilder()
-                        .withObject(extension.toSearch())
-                        .build()
-                ).toList();
-                searchOperations.bulkIndex(indexQueries);
-            }
+            searchIndexRebuilder.rebuild();
+        }
+    }
+
+    /**
+     * Compute the missing version keys in batches ordered by id, each in its own
+     * transaction so the persistence context is released after every batch.
+     */
+    @EventListener
+    public void initVersionKeys(ApplicationStartedEvent event) {
+        long lastId = 0;
+        while (true) {
+            var afterId = lastId;
+            Long batchLastId = transactions.execute(status -> {
+                var versions = repositories.findVersionsWithoutKey(afterId, VERSION_KEY_BATCH_SIZE);
+                if (versions.isEmpty())
+                    return null;
+                if (afterId == 0)
+                    logger.info("Computing version keys...");
+                for (var extVersion : versions) {
+                    extVersion.setVersionKey(new SemanticVersion(extVersion.getVersion()).getSortKey());
+                }
+                return versions.get(versions.size() - 1).getId();
+            });
+            if (batchLastId == null)
+                break;
+            lastId = batchLastId;
         }
     }
 
     public void updateSearchIndex(Extension extension) {
-        var indexQuery = new IndexQueryBuilder()
-                .withObject(extension.toSearch())
-                .build();
-        searchOperations.index(indexQuery);
+        searchIndex.enqueue(Collections.singleton(extension));
+    }
+
+    /**
+     * Schedule an update of the search index entries of the given extensions. The update is
+     * sent after the current transaction has been committed.
+     */
+    public void updateSearchIndex(Collection<Extension> extensions) {
+        searchIndex.enqueue(extensions);
     }
 
     @Override
     public SearchResultJson search(String queryString, String category, int size, int offset) {
-        var json = new SearchResultJson();
+        return search(queryString, category, size, offset, null);
+    }
+
+    /**
+     * Search for extensions. If a cursor from a previous result is given, the results
+     * continue right after it and the offset is ignored.
+     */
+    public SearchResultJson search(String queryString, String category, int size, int offset,
+                                   @Nullable SearchCursor cursor) {
         if (size <= 0) {
+            var json = new SearchResultJson();
             json.extensions = Collections.emptyList();
             return json;
         }
-
-        var pageRequest = PageRequest.of(offset / size, size);
-        var searchResult = search(queryString, category, pageRequest);
-        json.extensions = toSearchEntries(searchResult, size, offset % size);
-        json.offset = offset;
-        if (json.extensions.size() < size && searchResult.hasNext()) {
-            // This is necessary when offset % size > 0
-            var remainder = search(queryString, category, pageRequest.next());
-            json.extensions.addAll(toSearchEntries(remainder, size - json.extensions.size(), 0));
-        }
-        return json;
+        // Pages after a cursor are rarely requested twice, so they are not cached
+        if (cursor == null)
+            return searchCache.get(queryString, category, size, offset,
+                    () -> doSearch(queryString, category, size, offset, null));
+        return doSearch(queryString, category, size, offset, cursor);
     }
 
-    private Page<ExtensionSearch> search(String queryString, String category, Pageable pageRequest) {
-        var queryBuilder = new NativeSearchQueryBuilder()
-                .withIndices("extensions")
-                .withPageable(pageRequest);
-        if (!Strings.isNullOrEmpty(queryString)) {
-            var multiMatchQuery = QueryBuilders.multiMatchQuery(queryString)
-                    .field("name").boost(5)
-                    .field("displayName").boost(5)
-                    .field("tags").boost(3)
-                    .field("publisher").boost(2)
-                    .field("description")
-                    .fuzziness(Fuzziness.AUTO)
-                    .prefixLength(2);
-            queryBuilder.withQuery(multiMatchQuery);
-        }
-        if (!Strings.isNullOrEmpty(category)) {
-            queryBuilder.withFilter(QueryBuilders.matchPhraseQuery("categories", category));
-        }
-        return searchOperations.queryForPage(queryBuilder.build(), ExtensionSearch.class);
+    private SearchResultJson doSearch(String queryString, String category, int size, int offset,
+                                      @Nullable SearchCursor cursor) {
+        var json = new SearchResultJson();
+        var searchResult = searchService.search(queryString, category, size, offset, cursor);
+        json.extensions = CollectionUtil.map(searchResult.getContent(), this::toSearchEntry);
+        json.offset = cursor == null ? offset : 0;
+        if (searchResult.getNext() != null)
+            json.cursor = searchResult.getNext().encode(queryString, category);
+        return json;
     }
 
-    private List<SearchEntryJson> toSearchEntries(Page<ExtensionSearch> page, int size, int offset) {
-        if (offset > 0 || size < page.getNumberOfElements())
-            return CollectionUtil.map(
-                    Iterables.limit(Iterables.skip(page.getContent(), offset), size),
-                    this::toSearchEntry);
-        else
-            return CollectionUtil.map(page.getContent(), this::toSearchEntry);
+    /**
+     * Suggest extensions for the given search prefix from the in-memory suggestion index.
+     */
+    public SuggestionListJson suggest(String prefix, int size) {
+        var json = new SuggestionListJson();
+        json.suggestions = CollectionUtil.map(suggestions.suggest(prefix, size), suggestion -> {
+            var entry = suggestion.toSuggestionJson();
+            entry.url = createApiUrl(serverUrl, entry.publisher, entry.name);
+            entry.iconUrl = createApiUrl(serverUrl, entry.publisher, entry.name, "file", suggestion.iconFileName);
+            return entry;
+        });
+        return json;
     }
 
+    /**
+     * Publish an extension package that has already been uploaded to a scratch directory.
+     * The caller is responsible for closing the processor.
+     */
     @Transactional
-    public ExtensionJson publish(InputStream content) {
-        try (var processor = new ExtensionProcessor(content)) {
-            var publisher = repositories.findPublisher(processor.getPublisherName());
-            if (publisher == null) {
-                publisher = new Publisher();
-                publisher.setName(processor.getPublisherName());
-                entityManager.persist(publisher);
-            }
-            var extension = repositories.findExtension(processor.getExtensionName(), publisher);
-            var extVersion = processor.getMetadata();
-            extVersion.setTimestamp(LocalDateTime.now(ZoneId.of("UTC")));
-            if (extension == null) {
-                extension = new Extension();
-                extension.setName(processor.getExtensionName());
-                extension.setPublisher(publisher);
-                extension.setLatest(extVersion);
-                entityManager.persist(extension);
-            } else {
-                if (repositories.findVersion(extVersion.getVersion(), extension) != null) {
-                    throw new ErrorResultException(
-                            "Extension " + extension.getName()
-                            + " version " + extVersion.getVersion()
-                            + " is already published.");
-                }
-                if (isLatestVersion(extVersion.getVersion(), extension))
-                    extension.setLatest(extVersion);
-            }
-            extVersion.setExtension(extension);
-            extVersion.setExtensionFileName(
-                    publisher.getName()
-                    + "." + extension.getName()
-                    + "-" + extVersion.getVersion()
-                    + ".vsix");
-
-            entityManager.persist(extVersion);
-            var binary = processor.getBinary(extVersion);
-            entityManager.persist(binary);
-            var readme = processor.getReadme(extVersion);
-            if (readme != null)
-                entityManager.persist(readme);
-            var icon = processor.getIcon(extVersion);
-            if (icon != null)
-                entityManager.persist(icon);
-            processor.getExtensionDependencies().forEach(dep -> addDependency(dep, extVersion));
-            processor.getBundledExtensions().forEach(dep -> addBundledExtension(dep, extVersion));
-
-            updateSearchIndex(extension);
+    public ExtensionJson publish(ExtensionProcessor processor) {
+        try {
+            var extVersion = persist(processor);
+            updateSearchIndex(extVersion.getExtension());
             return toJson(extVersion, false);
         } catch (ErrorResultException exc) {
             return ExtensionJson.error(exc.getMessage());
         }
     }
 
-    private boolean isLatestVersion(String version, Extension extension) {
-        var allVersions = repositories.findVersions(extension);
-        var newSemver = new SemanticVersion(version);
-        for (var publishedVersion : allVersions) {
-            var oldSemver = new SemanticVersion(publishedVersion.getVersion());
-            if (newSemver.compareTo(oldSemver) < 0)
-                return false;
+    /**
+     * Publish multiple extension packages in one transaction. The results are in the order
+     * of the given processors, and the search index is updated with a single bulk request.
+     * The caller is responsible for closing the processors.
+     */
+    @Transactional
+    public List<ExtensionJson> publishAll(List<ExtensionProcessor> processors) {
+        var results = new ArrayList<ExtensionJson>(processors.size());
+        var extensions = new LinkedHashSet<Extension>();
+        for (var processor : processors) {
+            try {
+                var extVersion = persist(processor);
+                extensions.add(extVersion.getExtension());
+                results.add(toJson(extVersion, false));
+            } catch (ErrorResultException exc) {
+                results.add(ExtensionJson.error(exc.getMessage()));
+            }
         }
-        return true;
+        updateSearchIndex(extensions);
+        return results;
     }
 
-    private void addDependency(String dependency, ExtensionVersion extVersion) {
-        var split = dependency.split("\\.");
-        if (split.length != 2)
-            return;
-        var publisher = repositories.findPublisher(split[0]);
-        if (publisher == null)
-            return;
-        var extension = repositories.findExtension(split[1], publisher);
-        if (extension == null)
-            return;
-        var depList = extVersion.getDependencies();
-        if (depList == null) {
-            depList = new ArrayList<Extension>();
-            extVersion.setDependencies(depList);
+    private ExtensionVersion persist(ExtensionProcessor processor) {
+        var publisher = repositories.findPublisher(processor.getPublisherName());
+        if (publisher == null) {
+            publisher = new Publisher();
+            publisher.setName(processor.getPublisherName());
+            entityManager.persist(publisher);
+        }
+        var extension = repositories.findExtension(processor.getExtensionName(), publisher);
+        var isNewExtension = extension == null;
+        var extVersion = processor.getMetadata();
+        extVersion.setVersionKey(new SemanticVersion(extVersion.getVersion()).getSortKey());
+        extVersion.setTimestamp(LocalDateTime.now(ZoneId.of("UTC")));
+        if (extension == null) {
+            extension = new Extension();
+            extension.setName(processor.getExtensionName());
+            extension.setPublisher(publisher);
+            extension.setLatest(extVersion);
+            entityManager.persist(extension);
+        } else {
+            if (repositories.findVersion(extVersion.getVersion(), extension) != null)
+                throw alreadyPublished(extension.getName(), extVersion.getVersion());
+            if (isLatestVersion(extVersion, extension))
+                extension.setLatest(extVersion);
         }
-        depList.add(extension);
+        extVersion.setExtension(extension);
+        extVersion.setExtensionFileName(
+                publisher.getName()
+                + "." + extension.getName()
+                + "-" + extVersion.getVersion()
+                + ".vsix");
+
+        // The files are stored already if the processor has been prepared in advance
+        var fileVariants = processor.storeFiles(variants);
+        entityManager.persist(extVersion);
+        entityManager.persist(processor.getBinary());
+        var readme = processor.getReadme();
+        if (readme != null)
+            entityManager.persist(readme);
+        var icon = processor.getIcon();
+        if (icon != null)
+            entityManager.persist(icon);
+        variants.persist(fileVariants);
+        resolveReferences(processor, extVersion);
+        if (isNewExtension)
+            linkReferences(extension);
+
+        fileCache.invalidate(publisher.getName(), extension.getName());
+        return extVersion;
     }
 
-    private void addBundledExtension(String bundled, ExtensionVersion extVersion) {
-        var split = bundled.split("\\.");
-        if (split.length != 2)
-            return;
-        var publisher = repositories.findPublisher(split[0]);
-        if (publisher == null)
-            return;
-        var extension = repositories.findExtension(split[1], publisher);
-        if (extension == null)
+    /**
+     * Reject a package whose version is already published. This is checked again when the
+     * package is persisted; checking it in advance avoids storing the files of the package.
+     */
+    public void checkNotPublished(ExtensionProcessor processor) {
+        var version = processor.getMetadata().getVersion();
+        if (repositories.findVersion(version, processor.getExtensionName(), processor.getPublisherName()) != null)
+            throw alreadyPublished(processor.getExtensionName(), version);
+    }
+
+    private ErrorResultException alreadyPublished(String extensionName, String version) {
+        return new ErrorResultException("Extension " + extensionName + " version " + version + " is already published.");
+    }
+
+    private boolean isLatestVersion(ExtensionVersion extVersion, Extension extension) {
+        var maxVersionKey = repositories.findMaxVersionKey(extension);
+        return maxVersionKey == null || extVersion.getVersionKey().compareTo(maxVersionKey) >= 0;
+    }
+
+    /**
+     * Resolve the dependencies and bundled extensions of a new version with a single query.
+     * References to extensions that are not published yet are recorded, so they can be
+     * linked when the referenced extension is published.
+     */
+    private void resolveReferences(ExtensionProcessor processor, ExtensionVersion extVersion) {
+        var dependencyIds = processor.getExtensionDependencies();
+        var bundledIds = processor.getBundledExtensions();
+        if (dependencyIds.isEmpty() && bundledIds.isEmpty())
             return;
-        var depList = extVersion.getBundledExtensions();
-        if (depList == null) {
-            depList = new ArrayList<Extension>();
-            extVersion.setBundledExtensions(depList);
+        var ids = new HashSet<String>(dependencyIds);
+        ids.addAll(bundledIds);
+        var extensions = new HashMap<String, Extension>();
+        for (var extension : repositories.findExtensions(ids)) {
+            extensions.put(getExtensionId(extension), extension);
         }
-        depList.add(extension);
+
+        var unresolved = new ArrayList<String>();
+        var dependencies = resolveReferences(dependencyIds, extensions, unresolved);
+        if (!dependencies.isEmpty())
+            extVersion.setDependencies(dependencies);
+        if (!unresolved.isEmpty())
+            extVersion.setUnresolvedDependencies(unresolved);
+
+        unresolved = new ArrayList<String>();
+        var bundledExtensions = resolveReferences(bundledIds, extensions, unresolved);
+        if (!bundledExtensions.isEmpty())
+            extVersion.setBundledExtensions(bundledExtensions);
+        if (!unresolved.isEmpty())
+            extVersion.setUnresolvedBundledExtensions(unresolved);
+    }
+
+    private List<Extension> resolveReferences(List<String> ids, Map<String, Extension> extensions, List<String> unresolved) {
+        var result = new ArrayList<Extension>();
+        for (var id : ids) {
+            var extension = extensions.get(id);
+            if (extension != null)
+                result.add(extension);
+            else if (id.split("\\.").length == 2 && !unresolved.contains(id))
+                unresolved.add(id);
+        }
+        return result;
+    }
+
+    /**
+     * Link the references of previously published versions to a newly published extension.
+     */
+    private void linkReferences(Extension extension) {
+        var id = getExtensionId(extension);
+        for (var extVersion : repositories.findVersionsWithUnresolvedDependency(id)) {
+            extVersion.getUnresolvedDependencies().remove(id);
+            if (extVersion.getDependencies() == null)
+                extVersion.setDependencies(new ArrayList<>());
+            extVersion.getDependencies().add(extension);
+        }
+        for (var extVersion : repositories.findVersionsWithUnresolvedBundledExtension(id)) {
+            extVersion.getUnresolvedBundledExtensions().remove(id);
+            if (extVersion.getBundledExtensions() == null)
+                extVersion.setBundledExtensions(new ArrayList<>());
+            extVersion.getBundledExtensions().add(extension);
+        }
+    }
+
+    private String getExtensionId(Extension extension) {
+        return extension.getPublisher().getName() + "." + extension.getName();
     }
 
     @Transactional
@@ -348,6 +514,7 @@ public class LocalRegistryService implements IExtensionRegistry {
         extReview.setRating(review.rating);
         entityManager.persist(extReview);
         extension.setAverageRating(computeAverageRating(extension));
+        updateSearchIndex(extension);
         return new ReviewResultJson();
     }
 
@@ -363,14 +530,10 @@ public class LocalRegistryService implements IExtensionRegistry {
     }
 
     private SearchEntryJson toSearchEntry(ExtensionSearch search) {
-        var extension = entityManager.find(Extension.class, search.id);
-        if (extension == null)
-            return null;
-        var extVer = extension.getLatest();
-        var entry = extVer.toSearchEntryJson();
+        var entry = search.toSearchEntryJson();
         entry.url = createApiUrl(serverUrl, entry.publisher, entry.name);
-        entry.iconUrl = createApiUrl(serverUrl, entry.publisher, entry.name, "file", extVer.getIconFileName());
-        entry.downloadUrl = createApiUrl(serverUrl, entry.publisher, entry.name, "file", extVer.getExtensionFileName());
+        entry.iconUrl = createApiUrl(serverUrl, entry.publisher, entry.name, "file", search.iconFileName);
+        entry.downloadUrl = createApiUrl(serverUrl, entry.publisher, entry.name, "file", search.extensionFileName);
         return entry;
     }
 
@@ -380,13 +543,10 @@ public class LocalRegistryService implements IExtensionRegistry {
         json.reviewCount = repositories.countReviews(extension);
         json.publisherUrl = createApiUrl(serverUrl, json.publisher);
         json.reviewsUrl = createApiUrl(serverUrl, json.publisher, json.name, "reviews");
-        var allVersions = CollectionUtil.map(repositories.findVersions(extension),
-                extVer -> new SemanticVersion(extVer.getVersion()));
-        Collections.sort(allVersions, Comparator.reverseOrder());
         json.allVersions = new LinkedHashMap<>();
-        for (var semVer : allVersions) {
-            String url = createApiUrl(serverUrl, json.publisher, json.name, semVer.toString());
-            json.allVersions.put(semVer.toString(), url);
+        for (var version : repositories.findVersionStrings(extension)) {
+            String url = createApiUrl(serverUrl, json.publisher, json.name, version);
+            json.allVersions.put(version, url);
         }
         if (isLatest) {
             json.downloadUrl = createApiUrl(serverUrl, json.publisher, json.name, "file", extVersion.getExtensionFileName());
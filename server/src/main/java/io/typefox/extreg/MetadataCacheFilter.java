@@ -0,0 +1,50 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+/**
+ * Adds entity tags to the JSON responses of the registry API, so clients can revalidate
+ * their cached metadata and receive 304 Not Modified instead of the whole response.
+ * File downloads are excluded: they carry their content hash as entity tag or are streamed
+ * as archives, and must not be buffered in memory.
+ */
+public class MetadataCacheFilter extends ShallowEtagHeaderFilter {
+
+    public MetadataCacheFilter() {
+        // The servlet container does not compress responses with strong entity tags
+        setWriteWeakETag(true);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
+        return !HttpMethod.GET.matches(request.getMethod())
+                || request.getRequestURI().contains("/file/")
+                || request.getRequestURI().endsWith("/-/download");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        // Metadata changes with every publish or review, so caches must always revalidate it
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        super.doFilterInternal(request, response, filterChain);
+    }
+
+}
@@ -0,0 +1,296 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg;
+
+import static io.typefox.extreg.util.UrlUtil.createApiUrl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import com.google.common.base.Ascii;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.typefox.extreg.entities.PublishJob;
+import io.typefox.extreg.json.ExtensionJson;
+import io.typefox.extreg.json.PublishJobJson;
+import io.typefox.extreg.storage.FileStorage;
+import io.typefox.extreg.storage.ScratchSpaceService;
+import io.typefox.extreg.util.ErrorResultException;
+import io.typefox.extreg.util.NotFoundException;
+
+/**
+ * Publishes extensions in the background. The upload is checked in scratch space while the
+ * request is handled and then moved to the publish job directory ({@code OVSX_PUBLISH_JOB_PATH});
+ * extracting, persisting and indexing it is done by a bounded pool of workers. The state of each
+ * job is stored in the database. Uploads of jobs that were pending when the server stopped are
+ * queued again on startup, so the job directory must survive restarts, and it must not be shared
+ * with other server instances.
+ */
+@Component
+public class PublishJobService {
+
+    private static final String UPLOAD_SUFFIX = ".vsix";
+    private static final int MAX_ERROR_LENGTH = 2048;
+    private static final long JOB_RETENTION_HOURS = 24;
+
+    Logger logger = LoggerFactory.getLogger(PublishJobService.class);
+
+    @Autowired
+    LocalRegistryService local;
+
+    @Autowired
+    ScratchSpaceService scratchSpace;
+
+    @Autowired
+    FileStorage storage;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    TransactionTemplate transactions;
+
+    @Value("#{environment.OVSX_SERVER_URL}")
+    String serverUrl;
+
+    @Value("#{environment.OVSX_PUBLISH_JOB_PATH}")
+    String jobPath;
+
+    @Value("#{environment.OVSX_PUBLISH_WORKERS ?: 2}")
+    int workerCount;
+
+    @Value("#{environment.OVSX_PUBLISH_QUEUE_SIZE ?: 50}")
+    int queueSize;
+
+    private Path rootPath;
+    private ExecutorService executor;
+    // One permit per running or queued job, acquired before the upload is read
+    private Semaphore slots;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (Strings.isNullOrEmpty(jobPath))
+            rootPath = Paths.get(System.getProperty("user.home"), ".ovsx", "publish-jobs");
+        else
+            rootPath = Paths.get(jobPath);
+        Files.createDirectories(rootPath);
+        slots = new Semaphore(workerCount + queueSize);
+        // The queue is bounded by the slots
+        executor = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("publish-%d").build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Queue the jobs whose uploads were left in the job directory when the server stopped.
+     */
+    @EventListener
+    public void requeuePendingJobs(ApplicationStartedEvent event) {
+        try (var stream = Files.newDirectoryStream(rootPath, "*" + UPLOAD_SUFFIX)) {
+            for (var upload : stream) {
+                var fileName = upload.getFileName().toString();
+                var id = fileName.substring(0, fileName.length() - UPLOAD_SUFFIX.length());
+                var job = entityManager.find(PublishJob.class, id);
+                if (job == null || isFinished(job)) {
+                    // The job could not be recorded or was finished before the upload was deleted
+                    Files.delete(upload);
+                } else if (!slots.tryAcquire()) {
+                    update(id, PublishJobJson.FAILED, null, "The publish queue was full when the server restarted.");
+                    Files.delete(upload);
+                } else {
+                    logger.info("Queuing publish job " + id + " again");
+                    update(id, PublishJobJson.QUEUED, null, null);
+                    executor.execute(() -> run(id));
+                }
+            }
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+    /**
+     * Receive an extension package and queue a job to publish it. Rejects the upload
+     * before reading it if the queue is full.
+     */
+    public PublishJobJson submit(InputStream content) {
+        if (!slots.tryAcquire())
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many pending publish jobs.");
+        var id = UUID.randomUUID().toString();
+        var upload = getUploadPath(id);
+        try {
+            receive(content, upload);
+            var job = update(id, PublishJobJson.QUEUED, null, null);
+            executor.execute(() -> run(id));
+            return toJson(job);
+        } catch (ErrorResultException exc) {
+            slots.release();
+            return PublishJobJson.error(exc.getMessage());
+        } catch (RuntimeException exc) {
+            slots.release();
+            deleteUpload(upload);
+            throw exc;
+        }
+    }
+
+    /**
+     * Return the current state of a job, or {@code null} if the job is unknown or has expired.
+     */
+    public PublishJobJson getJob(String id) {
+        var job = entityManager.find(PublishJob.class, id);
+        if (job == null)
+            return null;
+        return toJson(job);
+    }
+
+    /**
+     * Remove finished jobs after the retention time. Unfinished jobs that have not changed
+     * for that long were received by an instance that has not come back, so they are failed.
+     */
+    @Scheduled(initialDelay = 3_600_000, fixedDelay = 3_600_000)
+    @Transactional
+    public void removeExpiredJobs() {
+        var now = LocalDateTime.now(ZoneId.of("UTC"));
+        var expiry = now.minusHours(JOB_RETENTION_HOURS);
+        // Bulk statements, so instances running this concurrently do not conflict
+        entityManager.createQuery("delete from PublishJob j where j.updated < ?1 and j.status in (?2)")
+                .setParameter(1, expiry)
+                .setParameter(2, Arrays.asList(PublishJobJson.SUCCEEDED, PublishJobJson.FAILED))
+                .executeUpdate();
+        entityManager.createQuery("update PublishJob j set j.status = ?1, j.error = ?2, j.updated = ?3"
+                        + " where j.updated < ?4 and j.status in (?5)")
+                .setParameter(1, PublishJobJson.FAILED)
+                .setParameter(2, "The job was abandoned by the server that received it.")
+                .setParameter(3, now)
+                .setParameter(4, expiry)
+                .setParameter(5, Arrays.asList(PublishJobJson.QUEUED, PublishJobJson.RUNNING))
+                .executeUpdate();
+    }
+
+    private void receive(InputStream content, Path upload) {
+        // The package is read in scratch space first, so invalid uploads are rejected right away
+        try (var scratchDirectory = scratchSpace.createDirectory()) {
+            Path file;
+            try (var processor = new ExtensionProcessor(content, scratchDirectory, storage)) {
+                file = processor.getFile();
+            }
+            Files.move(file, upload);
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+    private void run(String id) {
+        var upload = getUploadPath(id);
+        try {
+            update(id, PublishJobJson.RUNNING, null, null);
+            try (var processor = new ExtensionProcessor(upload, storage)) {
+                var result = local.publish(processor);
+                if (result.error != null)
+                    update(id, PublishJobJson.FAILED, null, result.error);
+                else
+                    update(id, PublishJobJson.SUCCEEDED, result, null);
+            }
+        } catch (ErrorResultException exc) {
+            update(id, PublishJobJson.FAILED, null, exc.getMessage());
+        } catch (RuntimeException exc) {
+            logger.error("Publish job " + id + " failed", exc);
+            update(id, PublishJobJson.FAILED, null, "Internal error: " + exc.getMessage());
+        } finally {
+            deleteUpload(upload);
+            slots.release();
+        }
+    }
+
+    private PublishJob update(String id, String status, ExtensionJson extension, String error) {
+        return transactions.execute(txStatus -> {
+            var job = entityManager.find(PublishJob.class, id);
+            if (job == null) {
+                job = new PublishJob();
+                job.setId(id);
+                entityManager.persist(job);
+            }
+            job.setStatus(status);
+            job.setError(error != null ? Ascii.truncate(error, MAX_ERROR_LENGTH, "...") : null);
+            if (extension != null) {
+                job.setPublisherName(extension.publisher);
+                job.setExtensionName(extension.name);
+                job.setVersion(extension.version);
+            }
+            job.setUpdated(LocalDateTime.now(ZoneId.of("UTC")));
+            return job;
+        });
+    }
+
+    private PublishJobJson toJson(PublishJob job) {
+        var json = new PublishJobJson();
+        json.id = job.getId();
+        json.status = job.getStatus();
+        json.statusUrl = createApiUrl(serverUrl, "-", "publish", "jobs", job.getId());
+        json.error = job.getError();
+        if (PublishJobJson.SUCCEEDED.equals(job.getStatus())) {
+            try {
+                json.extension = local.getExtension(job.getPublisherName(), job.getExtensionName(), job.getVersion());
+            } catch (NotFoundException exc) {
+                // The extension version has been removed since
+            }
+        }
+        return json;
+    }
+
+    private boolean isFinished(PublishJob job) {
+        return PublishJobJson.SUCCEEDED.equals(job.getStatus()) || PublishJobJson.FAILED.equals(job.getStatus());
+    }
+
+    private Path getUploadPath(String id) {
+        return rootPath.resolve(id + UPLOAD_SUFFIX);
+    }
+
+    private void deleteUpload(Path upload) {
+        try {
+            Files.deleteIfExists(upload);
+        } catch (IOException exc) {
+            logger.warn("Could not delete the upload " + upload, exc);
+        }
+    }
+
+}
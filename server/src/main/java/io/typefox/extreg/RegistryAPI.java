@@ -7,17 +7,34 @@
  ********************************************************************************/
 package io.typefox.extreg;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.URLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import com.google.common.collect.Iterables;
 
 import org.elasticsearch.common.Strings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -28,27 +45,61 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriUtils;
 
+import io.typefox.extreg.json.BatchPublishResultJson;
+import io.typefox.extreg.json.DownloadManifestJson;
 import io.typefox.extreg.json.ExtensionJson;
+import io.typefox.extreg.json.PublishJobJson;
 import io.typefox.extreg.json.PublisherJson;
 import io.typefox.extreg.json.ReviewJson;
 import io.typefox.extreg.json.ReviewListJson;
 import io.typefox.extreg.json.ReviewResultJson;
 import io.typefox.extreg.json.SearchEntryJson;
 import io.typefox.extreg.json.SearchResultJson;
+import io.typefox.extreg.json.SuggestionListJson;
+import io.typefox.extreg.search.SearchCursor;
+import io.typefox.extreg.storage.FileStorage;
+import io.typefox.extreg.storage.ScratchSpaceService;
+import io.typefox.extreg.util.ErrorResultException;
 import io.typefox.extreg.util.NotFoundException;
 
 @RestController
 public class RegistryAPI {
 
+    private static final Duration LATEST_FILE_MAX_AGE = Duration.ofMinutes(10);
+    private static final Duration VERSIONED_FILE_MAX_AGE = Duration.ofDays(365);
+    private static final int MAX_DOWNLOAD_EXTENSIONS = 100;
+    private static final int MAX_BATCH_PUBLISH_FILES = 500;
+    private static final int MAX_SUGGESTIONS = 50;
+
     @Autowired
     LocalRegistryService local;
 
     @Autowired
     UpstreamRegistryService upstream;
 
+    @Autowired
+    PublishJobService publishJobs;
+
+    @Autowired
+    BatchPublishService batchPublish;
+
+    @Autowired
+    ScratchSpaceService scratchSpace;
+
+    @Autowired
+    FileStorage storage;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
     @Value("#{environment.OVSX_WEBUI_URL}")
     String webuiUrl;
 
@@ -113,14 +164,18 @@ public class RegistryAPI {
 
     @GetMapping("/api/{publisher}/{extension}/file/{fileName}")
     @CrossOrigin
-    public ResponseEntity<byte[]> getFile(@PathVariable("publisher") String publisherName,
-                                          @PathVariable("extension") String extensionName,
-                                          @PathVariable("fileName") String fileName) {
+    public ResponseEntity<Resource> getFile(@PathVariable("publisher") String publisherName,
+                                            @PathVariable("extension") String extensionName,
+                                            @PathVariable("fileName") String fileName,
+                                            @RequestParam(name = "size", required = false) Integer size,
+                                            @RequestHeader HttpHeaders requestHeaders,
+                                            WebRequest webRequest) throws IOException {
         for (var registry : getRegistries()) {
             try {
-                var content = registry.getFile(publisherName, extensionName, fileName);
-                var headers = getFileResponseHeaders(fileName);
-                return new ResponseEntity<>(content, headers, HttpStatus.OK);
+                var file = registry.getFile(publisherName, extensionName, fileName);
+                // The latest version may change, so caches must revalidate the file after a while
+                var cacheControl = CacheControl.maxAge(LATEST_FILE_MAX_AGE).cachePublic().getHeaderValue();
+                return getFileResponse(file, fileName, size, cacheControl, requestHeaders, webRequest);
             } catch (NotFoundException exc) {
                 // Try the next registry
             }
@@ -130,15 +185,19 @@ public class RegistryAPI {
 
     @GetMapping("/api/{publisher}/{extension}/{version}/file/{fileName}")
     @CrossOrigin
-    public ResponseEntity<byte[]> getFile(@PathVariable("publisher") String publisherName,
-                                          @PathVariable("extension") String extensionName,
-                                          @PathVariable("version") String version,
-                                          @PathVariable("fileName") String fileName) {
+    public ResponseEntity<Resource> getFile(@PathVariable("publisher") String publisherName,
+                                            @PathVariable("extension") String extensionName,
+                                            @PathVariable("version") String version,
+                                            @PathVariable("fileName") String fileName,
+                                            @RequestParam(name = "size", required = false) Integer size,
+                                            @RequestHeader HttpHeaders requestHeaders,
+                                            WebRequest webRequest) throws IOException {
         for (var registry : getRegistries()) {
             try {
-                var content = registry.getFile(publisherName, extensionName, version, fileName);
-                var headers = getFileResponseHeaders(fileName);
-                return new ResponseEntity<>(content, headers, HttpStatus.OK);
+                var file = registry.getFile(publisherName, extensionName, version, fileName);
+                // A published version cannot be changed, so its files can be cached indefinitely
+                var cacheControl = CacheControl.maxAge(VERSIONED_FILE_MAX_AGE).cachePublic().getHeaderValue() + ", immutable";
+                return getFileResponse(file, fileName, size, cacheControl, requestHeaders, webRequest);
             } catch (NotFoundException exc) {
                 // Try the next registry
             }
@@ -146,19 +205,225 @@ public class RegistryAPI {
         throw new NotFoundException();
     }
 
-    private HttpHeaders getFileResponseHeaders(String fileName) {
+    ResponseEntity<Resource> getFileResponse(FileContent file, String fileName, Integer size, String cacheControl,
+                                             HttpHeaders requestHeaders, WebRequest webRequest) throws IOException {
         var headers = new HttpHeaders();
-        headers.setContentType(getFileType(fileName));
-        return headers;
+        headers.setCacheControl(cacheControl);
+        if (size != null && size > 0)
+            file = file.getRendition(size);
+        if (file.hasEncodings()) {
+            headers.setVary(Arrays.asList(HttpHeaders.ACCEPT_ENCODING));
+            file = selectEncoding(file, requestHeaders);
+        }
+        var resource = file.getResource();
+        // This also adds the ETag and Last-Modified headers to the response
+        if (webRequest.checkNotModified(file.getETag(), file.getLastModified())) {
+            if (resource.isOpen())
+                // Release the underlying connection without reading the content
+                resource.getInputStream().close();
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+
+        addContentHeaders(headers, file, fileName);
+        if (!resource.isOpen() && file.getContentLength() >= 0
+                && (requestHeaders.getFirst(HttpHeaders.RANGE) == null || isRangeApplicable(requestHeaders, file))) {
+            // Range requests are handled by the message converter: a single range is sent
+            // with status 206, multiple ranges are sent as multipart/byteranges
+            return new ResponseEntity<>(resource, headers, HttpStatus.OK);
+        }
+        // The resource cannot be read repeatedly or the requested range is outdated,
+        // so wrap it to bypass the range handling and send the whole content
+        headers.set(HttpHeaders.ACCEPT_RANGES, "none");
+        return new ResponseEntity<>(new InputStreamResource(resource.getInputStream()), headers, HttpStatus.OK);
+    }
+
+    /**
+     * Choose a precompressed representation of the file if the client accepts its encoding.
+     */
+    private FileContent selectEncoding(FileContent file, HttpHeaders requestHeaders) {
+        var acceptEncoding = requestHeaders.get(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null)
+            return file;
+        for (var headerValue : acceptEncoding) {
+            for (var coding : headerValue.split(",")) {
+                var params = coding.split(";");
+                var encoded = file.getEncoding(params[0].trim().toLowerCase());
+                if (encoded != null && !isRejected(params))
+                    return encoded;
+            }
+        }
+        return file;
+    }
+
+    private boolean isRejected(String[] codingParams) {
+        for (int i = 1; i < codingParams.length; i++) {
+            var param = codingParams[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2)) == 0;
+                } catch (NumberFormatException exc) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check the If-Range header of a range request: the range applies only if the given
+     * validator matches the current content; otherwise the whole content must be sent.
+     */
+    private boolean isRangeApplicable(HttpHeaders requestHeaders, FileContent file) {
+        var ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null)
+            return true;
+        if (ifRange.startsWith("\""))
+            return ifRange.equals(file.getETag());
+        if (ifRange.startsWith("W/"))
+            // Weak validators cannot be used for ranges
+            return false;
+        var lastModified = file.getLastModified();
+        if (lastModified < 0)
+            return false;
+        try {
+            return requestHeaders.getFirstDate(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException exc) {
+            return false;
+        }
+    }
+
+    private void addContentHeaders(HttpHeaders headers, FileContent file, String fileName) {
+        if (file.getContentType() != null)
+            headers.setContentType(file.getContentType());
+        else
+            headers.setContentType(FileContent.guessContentType(fileName));
+        if (file.getContentEncoding() != null)
+            headers.set(HttpHeaders.CONTENT_ENCODING, file.getContentEncoding());
+        if (file.getContentLength() >= 0)
+            headers.setContentLength(file.getContentLength());
+    }
+
+    /**
+     * Send the packages of multiple extensions in one zip archive. Extensions are given as
+     * {@code publisher.extension} or {@code publisher.extension@version}. All extensions are
+     * resolved before the response starts. The archive is then written while the packages are
+     * read, and its last entry {@code manifest.json} lists the extensions that could not be found.
+     */
+    @GetMapping("/api/-/download")
+    @CrossOrigin
+    public void download(@RequestParam("extensions") List<String> extensionIds,
+                         HttpServletResponse response) throws IOException {
+        var ids = new LinkedHashSet<>(extensionIds);
+        if (ids.size() > MAX_DOWNLOAD_EXTENSIONS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_DOWNLOAD_EXTENSIONS + " extensions can be downloaded at once.");
+        }
+        // Resolve all extensions first, so errors can still be reported with a status code
+        var manifest = new DownloadManifestJson();
+        manifest.files = new LinkedHashMap<>();
+        manifest.missing = new ArrayList<>();
+        var packages = new LinkedHashMap<String, ExtensionPackage>();
+        for (var id : ids) {
+            var extPackage = findPackage(id);
+            if (extPackage == null) {
+                manifest.missing.add(id);
+                continue;
+            }
+            // Different ids can refer to the same version, e.g. with and without version number
+            var existing = packages.putIfAbsent(extPackage.entryName, extPackage);
+            if (existing != null)
+                existing.ids.addAll(extPackage.ids);
+            manifest.files.put(id, extPackage.entryName);
+        }
+
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.builder("attachment").filename("extensions.zip").build().toString());
+        try (var zip = new ZipOutputStream(response.getOutputStream())) {
+            // Extension packages are zip files themselves, so compressing them again is wasted effort
+            zip.setLevel(Deflater.NO_COMPRESSION);
+            for (var extPackage : packages.values()) {
+                FileContent file;
+                try {
+                    file = findFile(extPackage.publisher, extPackage.name, extPackage.version, extPackage.fileName);
+                } catch (ResponseStatusException exc) {
+                    file = null;
+                }
+                if (file == null) {
+                    // The archive is already being written, so report the package as missing
+                    extPackage.ids.forEach(manifest.files::remove);
+                    manifest.missing.addAll(extPackage.ids);
+                    continue;
+                }
+                zip.putNextEntry(new ZipEntry(extPackage.entryName));
+                try (var stream = file.getResource().getInputStream()) {
+                    stream.transferTo(zip);
+                }
+                zip.closeEntry();
+            }
+            zip.putNextEntry(new ZipEntry("manifest.json"));
+            zip.write(objectMapper.writeValueAsBytes(manifest));
+            zip.closeEntry();
+        }
+    }
+
+    private ExtensionPackage findPackage(String extensionId) {
+        var versionIndex = extensionId.indexOf('@');
+        var name = versionIndex < 0 ? extensionId : extensionId.substring(0, versionIndex);
+        var version = versionIndex < 0 ? null : extensionId.substring(versionIndex + 1);
+        var nameIndex = name.indexOf('.');
+        if (nameIndex <= 0 || nameIndex == name.length() - 1 || "".equals(version))
+            return null;
+        var extPackage = new ExtensionPackage();
+        extPackage.publisher = name.substring(0, nameIndex);
+        extPackage.name = name.substring(nameIndex + 1);
+        extPackage.version = version;
+        try {
+            extPackage.fileName = local.getExtensionFileName(extPackage.publisher, extPackage.name, version);
+            extPackage.entryName = extPackage.fileName;
+            return isSafeEntryName(extPackage.entryName) ? extPackage.withId(extensionId) : null;
+        } catch (NotFoundException exc) {
+            // Try the upstream registry
+        }
+        if (!upstream.isValid())
+            return null;
+        try {
+            var extension = version == null
+                    ? upstream.getExtension(extPackage.publisher, extPackage.name)
+                    : upstream.getExtension(extPackage.publisher, extPackage.name, version);
+            if (extension.downloadUrl == null)
+                return null;
+            extPackage.version = extension.version;
+            extPackage.fileName = UriUtils.decode(extension.downloadUrl.substring(extension.downloadUrl.lastIndexOf('/') + 1),
+                    StandardCharsets.UTF_8);
+            // The entry name is built like the local file names instead of using the name from the URL
+            extPackage.entryName = extension.publisher + "." + extension.name + "-" + extension.version + ".vsix";
+            return isSafeEntryName(extPackage.entryName) ? extPackage.withId(extensionId) : null;
+        } catch (NotFoundException exc) {
+            return null;
+        }
     }
 
-    private MediaType getFileType(String fileName) {
-        if (fileName.endsWith(".vsix"))
-            return MediaType.APPLICATION_OCTET_STREAM;
-        var contentType = URLConnection.guessContentTypeFromName(fileName);
-        if (contentType != null)
-            return MediaType.parseMediaType(contentType);
-        return MediaType.TEXT_PLAIN;
+    /**
+     * Entry names must not contain path separators or parent references, so extracting
+     * the archive cannot write files outside of the target directory.
+     */
+    private boolean isSafeEntryName(String name) {
+        return !name.contains("/") && !name.contains("\\") && !name.contains("..");
+    }
+
+    private FileContent findFile(String publisherName, String extensionName, @Nullable String version, String fileName) {
+        for (var registry : getRegistries()) {
+            try {
+                if (version == null)
+                    return registry.getFile(publisherName, extensionName, fileName);
+                else
+                    return registry.getFile(publisherName, extensionName, version, fileName);
+            } catch (NotFoundException exc) {
+                // Try the next registry
+            }
+        }
+        return null;
     }
 
     @GetMapping(
@@ -186,13 +451,22 @@ public class RegistryAPI {
     public SearchResultJson search(@RequestParam(name = "query", required = false) String query,
                                    @RequestParam(name = "category", required = false) String category,
                                    @RequestParam(name = "size", defaultValue = "18") int size,
-                                   @RequestParam(name = "offset", defaultValue = "0") int offset) {
+                                   @RequestParam(name = "offset", defaultValue = "0") int offset,
+                                   @RequestParam(name = "cursor", required = false) String cursor) {
         if (size < 0) {
             return SearchResultJson.error("The parameter 'size' must not be negative.");
         }
         if (offset < 0) {
             return SearchResultJson.error("The parameter 'offset' must not be negative.");
         }
+        if (!Strings.isNullOrEmpty(cursor)) {
+            // Cursors are issued only for results of the local registry
+            try {
+                return local.search(query, category, size, offset, SearchCursor.decode(cursor, query, category));
+            } catch (IllegalArgumentException exc) {
+                return SearchResultJson.error("The parameter 'cursor' is invalid.");
+            }
+        }
 
         var result = new SearchResultJson();
         result.extensions = new ArrayList<>(size);
@@ -202,9 +476,14 @@ public class RegistryAPI {
             }
             try {
                 var subResult = registry.search(query, category, size, offset);
+                if (registry == local)
+                    result.cursor = subResult.cursor;
                 if (subResult.extensions != null && subResult.extensions.size() > 0) {
                     int limit = size - result.extensions.size();
                     var subResultSize = mergeSearchResults(result, subResult.extensions, limit);
+                    // A cursor only continues the results of the local registry
+                    if (registry != local && subResultSize > 0)
+                        result.cursor = null;
                     result.offset += subResult.offset;
                     offset = Math.max(offset - subResult.offset - subResultSize, 0);
                 }
@@ -215,6 +494,19 @@ public class RegistryAPI {
         return result;
     }
 
+    @GetMapping(
+        value = "/api/-/suggest",
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @CrossOrigin
+    public SuggestionListJson suggest(@RequestParam(name = "prefix") String prefix,
+                                      @RequestParam(name = "size", defaultValue = "10") int size) {
+        if (size < 0) {
+            return SuggestionListJson.error("The parameter 'size' must not be negative.");
+        }
+        return local.suggest(prefix, Math.min(size, MAX_SUGGESTIONS));
+    }
+
     private int mergeSearchResults(SearchResultJson result, List<SearchEntryJson> entries, int limit) {
         var previousResult = Iterables.limit(result.extensions, result.extensions.size());
         var entriesIter = entries.iterator();
@@ -235,7 +527,55 @@ public class RegistryAPI {
         produces = MediaType.APPLICATION_JSON_VALUE
     )
     public ExtensionJson publish(InputStream content) {
-        return local.publish(content);
+        // The upload is extracted before the publishing transaction starts, so waiting
+        // for scratch space does not hold a database connection
+        try (
+            var scratchDirectory = scratchSpace.createDirectory();
+            var processor = new ExtensionProcessor(content, scratchDirectory, storage)
+        ) {
+            return local.publish(processor);
+        } catch (ErrorResultException exc) {
+            return ExtensionJson.error(exc.getMessage());
+        }
+    }
+
+    @PostMapping(
+        value = "/api/-/publish/batch",
+        consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public BatchPublishResultJson publishBatch(@RequestParam("files") List<MultipartFile> files) {
+        if (files.size() > MAX_BATCH_PUBLISH_FILES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_BATCH_PUBLISH_FILES + " files can be published at once.");
+        }
+        return batchPublish.publish(files);
+    }
+
+    @PostMapping(
+        value = "/api/-/publish/jobs",
+        consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE,
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<PublishJobJson> submitPublishJob(InputStream content) {
+        var job = publishJobs.submit(content);
+        if (job.id == null)
+            return new ResponseEntity<>(job, HttpStatus.BAD_REQUEST);
+        var headers = new HttpHeaders();
+        if (job.statusUrl != null)
+            headers.setLocation(URI.create(job.statusUrl));
+        return new ResponseEntity<>(job, headers, HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping(
+        value = "/api/-/publish/jobs/{id}",
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public PublishJobJson getPublishJob(@PathVariable("id") String id) {
+        var job = publishJobs.getJob(id);
+        if (job == null)
+            throw new NotFoundException();
+        return job;
     }
 
     @PostMapping(
@@ -271,4 +611,21 @@ public class RegistryAPI {
         return headers;
     }
 
-}
\ No newline at end of file
+    /**
+     * An extension package to be included in a download archive.
+     */
+    private static class ExtensionPackage {
+        String publisher;
+        String name;
+        String version;
+        String fileName;
+        String entryName;
+        final List<String> ids = new ArrayList<>(1);
+
+        ExtensionPackage withId(String id) {
+            ids.add(id);
+            return this;
+        }
+    }
+
+}
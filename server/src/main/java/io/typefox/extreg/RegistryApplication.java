@@ -10,13 +10,16 @@ package io.typefox.extreg;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.StringHttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
+@EnableScheduling
 public class RegistryApplication {
 
     public static void main(String[] args) {
@@ -33,4 +36,11 @@ public class RegistryApplication {
             .build();
 	}
 
+	@Bean
+	public FilterRegistrationBean<MetadataCacheFilter> metadataCacheFilter() {
+		var registration = new FilterRegistrationBean<>(new MetadataCacheFilter());
+		registration.addUrlPatterns("/api/*");
+		return registration;
+	}
+
 }
@@ -9,17 +9,20 @@ package io.typefox.extreg;
 
 import static io.typefox.extreg.util.UrlUtil.createApiUrl;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.Arrays;
 
 import com.google.common.base.Strings;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
+import org.springframework.core.io.AbstractResource;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestClientException;
@@ -76,27 +79,36 @@ public class UpstreamRegistryService implements IExtensionRegistry {
     }
 
     @Override
-    public byte[] getFile(String publisherName, String extensionName, String fileName) {
+    public FileContent getFile(String publisherName, String extensionName, String fileName) {
         return getFile(createApiUrl(upstreamUrl, publisherName, extensionName, "file", fileName));
     }
 
     @Override
-    public byte[] getFile(String publisherName, String extensionName, String version, String fileName) {
+    public FileContent getFile(String publisherName, String extensionName, String version, String fileName) {
         return getFile(createApiUrl(upstreamUrl, publisherName, extensionName, version, "file", fileName));
     }
 
-    private byte[] getFile(String url) {
-        var headers = new HttpHeaders();
-        headers.setAccept(Arrays.asList(MediaType.APPLICATION_OCTET_STREAM));
-        var response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<String>(headers), byte[].class);
-        switch (response.getStatusCode()) {
-            case OK:
-                return response.getBody();
-            case NOT_FOUND:
+    private FileContent getFile(String url) {
+        try {
+            // Bypass the message converters so the response body is passed through as a stream
+            var request = restTemplate.getRequestFactory().createRequest(URI.create(url), HttpMethod.GET);
+            request.getHeaders().setAccept(Arrays.asList(MediaType.APPLICATION_OCTET_STREAM));
+            var response = request.execute();
+            var status = response.getStatusCode();
+            if (status == HttpStatus.OK) {
+                var headers = response.getHeaders();
+                var file = new FileContent(new ResponseResource(response), headers.getContentLength(), headers.getContentType());
+                file.setETag(headers.getETag());
+                file.setLastModified(headers.getLastModified());
+                return file;
+            }
+            response.close();
+            if (status == HttpStatus.NOT_FOUND)
                 throw new NotFoundException();
-            default:
-                throw new ResponseStatusException(response.getStatusCode(),
-                        "Upstream registry responded with status \"" + response.getStatusCode().getReasonPhrase() + "\".");
+            throw new ResponseStatusException(status,
+                    "Upstream registry responded with status \"" + status.getReasonPhrase() + "\".");
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
         }
     }
 
@@ -133,4 +145,42 @@ public class UpstreamRegistryService implements IExtensionRegistry {
         }
     }
 
+    /**
+     * Resource that streams the body of an upstream response. Its input stream
+     * can be obtained only once; closing it releases the connection.
+     */
+    private static class ResponseResource extends AbstractResource {
+
+        private final ClientHttpResponse response;
+        private boolean read;
+
+        ResponseResource(ClientHttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Upstream registry response";
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return response.getHeaders().getContentLength();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (read)
+                throw new IllegalStateException("The upstream response has already been read.");
+            read = true;
+            return response.getBody();
+        }
+
+    }
+
 }
\ No newline at end of file
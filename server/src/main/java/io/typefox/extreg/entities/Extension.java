@@ -40,7 +40,7 @@ public class Extension {
 
 
     /**
-     * Convert to a search entity for Elasticsearch.
+     * Convert to an entry of the search index.
      */
     public ExtensionSearch toSearch() {
         var search = new ExtensionSearch();
@@ -52,6 +52,11 @@ public class Extension {
         search.description = extVer.getDescription();
         search.categories = extVer.getCategories();
         search.tags = extVer.getTags();
+        search.version = extVer.getVersion();
+        search.timestamp = extVer.getTimestamp().toString();
+        search.averageRating = this.getAverageRating();
+        search.iconFileName = extVer.getIconFileName();
+        search.extensionFileName = extVer.getExtensionFileName();
         return search;
     }
 
@@ -22,7 +22,11 @@ public class ExtensionReadme implements FileResource {
     @OneToOne
     ExtensionVersion extension;
 
-    byte[] content;
+    String hash;
+
+    Long size;
+
+    String contentType;
 
 
 	public long getId() {
@@ -42,13 +46,33 @@ public class ExtensionReadme implements FileResource {
 	}
 
     @Override
-	public byte[] getContent() {
-		return content;
+	public String getHash() {
+		return hash;
+	}
+
+    @Override
+	public void setHash(String hash) {
+		this.hash = hash;
+	}
+
+    @Override
+	public Long getSize() {
+		return size;
+	}
+
+    @Override
+	public void setSize(Long size) {
+		this.size = size;
+	}
+
+    @Override
+	public String getContentType() {
+		return contentType;
 	}
 
     @Override
-	public void setContent(byte[] content) {
-		this.content = content;
+	public void setContentType(String contentType) {
+		this.contentType = contentType;
 	}
 
 }
\ No newline at end of file
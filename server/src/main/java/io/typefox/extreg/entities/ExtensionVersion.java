@@ -16,16 +16,18 @@ import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToOne;
+import javax.persistence.Table;
 
 import io.typefox.extreg.json.ExtensionJson;
 import io.typefox.extreg.json.ExtensionReferenceJson;
-import io.typefox.extreg.json.SearchEntryJson;
 import io.typefox.extreg.util.CollectionUtil;
 
 @Entity
+@Table(indexes = @Index(columnList = "extension_id,versionKey"))
 public class ExtensionVersion {
 
     @Id
@@ -40,6 +42,9 @@ public class ExtensionVersion {
 
     String version;
 
+    // Sorts like the semantic version, see SemanticVersion#getSortKey()
+    String versionKey;
+
     boolean preview;
 
     LocalDateTime timestamp;
@@ -83,6 +88,13 @@ public class ExtensionVersion {
     @ManyToMany
     List<Extension> bundledExtensions;
 
+    // References to extensions that were not published yet, linked when they are published
+    @ElementCollection
+    List<String> unresolvedDependencies;
+
+    @ElementCollection
+    List<String> unresolvedBundledExtensions;
+
 
     /**
      * Convert to a JSON object without URLs.
@@ -129,22 +141,6 @@ public class ExtensionVersion {
         return json;
     }
 
-    /**
-     * Convert to a search entry JSON object without URLs.
-     */
-    public SearchEntryJson toSearchEntryJson() {
-        var entry = new SearchEntryJson();
-        var extension = this.getExtension();
-        entry.name = extension.getName();
-        entry.publisher = extension.getPublisher().getName();
-        entry.averageRating = extension.getAverageRating();
-        entry.version = this.getVersion();
-        entry.timestamp = this.getTimestamp().toString();
-        entry.displayName = this.getDisplayName();
-        entry.description = this.getDescription();
-        return entry;
-    }
-
 	public long getId() {
 		return id;
 	}
@@ -169,6 +165,14 @@ public class ExtensionVersion {
 		this.version = version;
 	}
 
+	public String getVersionKey() {
+		return versionKey;
+	}
+
+	public void setVersionKey(String versionKey) {
+		this.versionKey = versionKey;
+	}
+
 	public boolean isPreview() {
 		return preview;
 	}
@@ -321,4 +325,20 @@ public class ExtensionVersion {
 		this.bundledExtensions = bundledExtensions;
 	}
 
+	public List<String> getUnresolvedDependencies() {
+		return unresolvedDependencies;
+	}
+
+	public void setUnresolvedDependencies(List<String> unresolvedDependencies) {
+		this.unresolvedDependencies = unresolvedDependencies;
+	}
+
+	public List<String> getUnresolvedBundledExtensions() {
+		return unresolvedBundledExtensions;
+	}
+
+	public void setUnresolvedBundledExtensions(List<String> unresolvedBundledExtensions) {
+		this.unresolvedBundledExtensions = unresolvedBundledExtensions;
+	}
+
 }
\ No newline at end of file
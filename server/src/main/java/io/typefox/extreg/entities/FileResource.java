@@ -7,10 +7,30 @@
  ********************************************************************************/
 package io.typefox.extreg.entities;
 
+/**
+ * Metadata of a file whose content is kept in a
+ * {@link io.typefox.extreg.storage.FileStorage}.
+ */
 public interface FileResource {
 
-	byte[] getContent();
+	/**
+	 * SHA-256 hash of the content, used as key in the file storage. Files published
+	 * before the file storage existed have no hash until they are migrated.
+	 */
+	String getHash();
 
-	void setContent(byte[] content);
+	void setHash(String hash);
+
+	/**
+	 * Size of the content in bytes, or {@code null} for files that have not been
+	 * moved to the file storage yet.
+	 */
+	Long getSize();
+
+	void setSize(Long size);
+
+	String getContentType();
+
+	void setContentType(String contentType);
     
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * A file derived from the content of another file, e.g. a compressed form of it.
+ * Variants refer to the hash of their source, so they are created only once for
+ * identical files of different extension versions.
+ */
+@Entity
+@Table(indexes = @Index(columnList = "sourceHash,variant"))
+public class FileVariant implements FileResource {
+
+    @Id
+    @GeneratedValue
+    long id;
+
+    String sourceHash;
+
+    String variant;
+
+    String hash;
+
+    Long size;
+
+    String contentType;
+
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public String getSourceHash() {
+		return sourceHash;
+	}
+
+	public void setSourceHash(String sourceHash) {
+		this.sourceHash = sourceHash;
+	}
+
+	public String getVariant() {
+		return variant;
+	}
+
+	public void setVariant(String variant) {
+		this.variant = variant;
+	}
+
+    @Override
+	public String getHash() {
+		return hash;
+	}
+
+    @Override
+	public void setHash(String hash) {
+		this.hash = hash;
+	}
+
+    @Override
+	public Long getSize() {
+		return size;
+	}
+
+    @Override
+	public void setSize(Long size) {
+		this.size = size;
+	}
+
+    @Override
+	public String getContentType() {
+		return contentType;
+	}
+
+    @Override
+	public void setContentType(String contentType) {
+		this.contentType = contentType;
+	}
+
+}
@@ -0,0 +1,100 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * A background publish job. The uploaded package of a job that has not finished yet
+ * is kept in the publish job directory of the server instance that received it.
+ * The coordinates of the published extension are recorded when the job succeeds.
+ */
+@Entity
+@Table(indexes = @Index(columnList = "updated"))
+public class PublishJob {
+
+    @Id
+    String id;
+
+    String status;
+
+    @Column(length = 2048)
+    String error;
+
+    String publisherName;
+
+    String extensionName;
+
+    String version;
+
+    LocalDateTime updated;
+
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	public String getPublisherName() {
+		return publisherName;
+	}
+
+	public void setPublisherName(String publisherName) {
+		this.publisherName = publisherName;
+	}
+
+	public String getExtensionName() {
+		return extensionName;
+	}
+
+	public void setExtensionName(String extensionName) {
+		this.extensionName = extensionName;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public void setVersion(String version) {
+		this.version = version;
+	}
+
+	public LocalDateTime getUpdated() {
+		return updated;
+	}
+
+	public void setUpdated(LocalDateTime updated) {
+		this.updated = updated;
+	}
+
+}
@@ -0,0 +1,57 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+/**
+ * Progress of a rebuild of the search index. All extensions with ids up to
+ * {@code lastExtensionId} have been indexed, so an interrupted rebuild can
+ * continue from there. The entry is removed when the rebuild is complete.
+ */
+@Entity
+public class SearchIndexRebuild {
+
+    @Id
+    @GeneratedValue
+    long id;
+
+    long lastExtensionId;
+
+    LocalDateTime started;
+
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public long getLastExtensionId() {
+		return lastExtensionId;
+	}
+
+	public void setLastExtensionId(long lastExtensionId) {
+		this.lastExtensionId = lastExtensionId;
+	}
+
+	public LocalDateTime getStarted() {
+		return started;
+	}
+
+	public void setStarted(LocalDateTime started) {
+		this.started = started;
+	}
+
+}
@@ -0,0 +1,69 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * An entry of the search index outbox: the search index entry of the extension
+ * must be updated after the transaction that recorded this has been committed.
+ */
+@Entity
+@Table(indexes = @Index(columnList = "nextAttempt"))
+public class SearchIndexUpdate {
+
+    @Id
+    @GeneratedValue
+    long id;
+
+    long extensionId;
+
+    LocalDateTime nextAttempt;
+
+    int attempts;
+
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public long getExtensionId() {
+		return extensionId;
+	}
+
+	public void setExtensionId(long extensionId) {
+		this.extensionId = extensionId;
+	}
+
+	public LocalDateTime getNextAttempt() {
+		return nextAttempt;
+	}
+
+	public void setNextAttempt(LocalDateTime nextAttempt) {
+		this.nextAttempt = nextAttempt;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+}
@@ -0,0 +1,28 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.json;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Describes the content of an archive with multiple extension packages.
+ */
+@JsonInclude(Include.NON_NULL)
+public class DownloadManifestJson {
+
+    /** The archive entry names of the included extensions, mapped by the requested extension ids. */
+    public Map<String, String> files;
+
+    /** The requested extension ids that could not be found. */
+    public List<String> missing;
+
+}
@@ -0,0 +1,43 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.json;
+
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+@JsonInclude(Include.NON_NULL)
+public class PublishJobJson {
+
+    public static final String QUEUED = "queued";
+    public static final String RUNNING = "running";
+    public static final String SUCCEEDED = "succeeded";
+    public static final String FAILED = "failed";
+
+    public static PublishJobJson error(String message) {
+        var json = new PublishJobJson();
+        json.status = FAILED;
+        json.error = message;
+        return json;
+    }
+
+    @Nullable
+    public String error;
+
+    public String id;
+
+    public String status;
+
+    public String statusUrl;
+
+    /** The published extension, available when the job has succeeded. */
+    @Nullable
+    public ExtensionJson extension;
+
+}
@@ -28,6 +28,15 @@ public class SearchResultJson {
 
     public int offset;
 
+    /**
+     * Opaque position after the last returned entry. Passing it to the next search request
+     * with the same query and category continues the results with a single query, however
+     * deep the page is. Only results of the local registry can be continued this way, so
+     * the cursor is omitted when the page includes results of an upstream registry.
+     */
+    @Nullable
+    public String cursor;
+
     public List<SearchEntryJson> extensions;
 
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.json;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+@JsonInclude(Include.NON_NULL)
+public class SuggestionListJson {
+
+    public static SuggestionListJson error(String message) {
+        var result = new SuggestionListJson();
+        result.error = message;
+        return result;
+    }
+
+    @Nullable
+    public String error;
+
+    public List<SuggestionJson> suggestions;
+
+}
@@ -7,6 +7,11 @@
  ********************************************************************************/
 package io.typefox.extreg.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.util.Streamable;
 
@@ -23,6 +28,19 @@ public interface ExtensionRepository extends Repository<Extension, Long> {
 
     Extension findByNameAndPublisherName(String name, String publisherName);
 
+    @Query("select e.latest.extensionFileName from Extension e where e.name = ?1 and e.publisher.name = ?2")
+    String findLatestExtensionFileName(String name, String publisherName);
+
+    @Query("select e from Extension e join fetch e.publisher p where p.name in ?1 and e.name in ?2")
+    Streamable<Extension> findByPublisherNameInAndNameIn(Collection<String> publisherNames, Collection<String> names);
+
+    Streamable<Extension> findByIdIn(Collection<Long> ids);
+
     Streamable<Extension> findAll();
 
+    @Query("select e from Extension e join fetch e.publisher join fetch e.latest where e.id > ?1 order by e.id")
+    List<Extension> findByIdGreaterThanWithLatest(long afterId, Pageable pageable);
+
+    long count();
+
 }
\ No newline at end of file
@@ -7,6 +7,10 @@
  ********************************************************************************/
 package io.typefox.extreg.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.util.Streamable;
 
@@ -19,4 +23,7 @@ public interface ExtensionReviewRepository extends Repository<ExtensionReview, L
 
     long countByExtension(Extension extension);
 
+    @Query("select r.extension.id, count(r) from ExtensionReview r where r.extension in ?1 group by r.extension.id")
+    List<Object[]> countByExtensionIn(Collection<Extension> extensions);
+
 }
\ No newline at end of file
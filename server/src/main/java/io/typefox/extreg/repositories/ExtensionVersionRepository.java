@@ -7,6 +7,11 @@
  ********************************************************************************/
 package io.typefox.extreg.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.util.Streamable;
 
@@ -15,10 +20,33 @@ import io.typefox.extreg.entities.ExtensionVersion;
 
 public interface ExtensionVersionRepository extends Repository<ExtensionVersion, Long> {
 
-    Streamable<ExtensionVersion> findByExtension(Extension extension);
+    Streamable<ExtensionVersion> findByExtensionOrderByVersionKeyDesc(Extension extension);
+
+    @Query("select v.version from ExtensionVersion v where v.extension = ?1 order by v.versionKey desc")
+    Streamable<String> findVersionStringsByExtension(Extension extension);
+
+    @Query("select max(v.versionKey) from ExtensionVersion v where v.extension = ?1")
+    String findMaxVersionKeyByExtension(Extension extension);
+
+    List<ExtensionVersion> findByVersionKeyIsNullAndIdGreaterThanOrderById(long afterId, Pageable pageable);
 
     ExtensionVersion findByVersionAndExtension(String version, Extension extension);
 
     ExtensionVersion findByVersionAndExtensionNameAndExtensionPublisherName(String version, String extensionName, String publisherName);
 
+    @Query("select v.extensionFileName from ExtensionVersion v where v.version = ?1 and v.extension.name = ?2 and v.extension.publisher.name = ?3")
+    String findExtensionFileName(String version, String extensionName, String publisherName);
+
+    @Query("select v from ExtensionVersion v where ?1 member of v.unresolvedDependencies")
+    Streamable<ExtensionVersion> findByUnresolvedDependency(String extensionId);
+
+    @Query("select v from ExtensionVersion v where ?1 member of v.unresolvedBundledExtensions")
+    Streamable<ExtensionVersion> findByUnresolvedBundledExtension(String extensionId);
+
+    @Query("select distinct v from ExtensionVersion v left join fetch v.categories where v in ?1")
+    Streamable<ExtensionVersion> fetchCategories(Collection<ExtensionVersion> versions);
+
+    @Query("select distinct v from ExtensionVersion v left join fetch v.tags where v in ?1")
+    Streamable<ExtensionVersion> fetchTags(Collection<ExtensionVersion> versions);
+
 }
\ No newline at end of file
@@ -7,7 +7,15 @@
  ********************************************************************************/
 package io.typefox.extreg.repositories;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.util.Streamable;
 import org.springframework.stereotype.Component;
 
@@ -17,9 +25,13 @@ import io.typefox.extreg.entities.ExtensionIcon;
 import io.typefox.extreg.entities.ExtensionReadme;
 import io.typefox.extreg.entities.ExtensionReview;
 import io.typefox.extreg.entities.ExtensionVersion;
+import io.typefox.extreg.entities.FileVariant;
 import io.typefox.extreg.entities.Publisher;
+import io.typefox.extreg.entities.SearchIndexRebuild;
+import io.typefox.extreg.entities.SearchIndexUpdate;
 import io.typefox.extreg.entities.UserData;
 import io.typefox.extreg.entities.UserSession;
+import io.typefox.extreg.util.CollectionUtil;
 
 @Component
 public class RepositoryService {
@@ -31,6 +43,9 @@ public class RepositoryService {
     @Autowired ExtensionIconRepository extensionIconRepo;
     @Autowired ExtensionReadmeRepository extensionReadmeRepo;
     @Autowired ExtensionReviewRepository extensionReviewRepo;
+    @Autowired FileVariantRepository fileVariantRepo;
+    @Autowired SearchIndexRebuildRepository searchIndexRebuildRepo;
+    @Autowired SearchIndexUpdateRepository searchIndexUpdateRepo;
     @Autowired UserDataRepository userDataRepo;
     @Autowired UserSessionRepository userSessionRepo;
 
@@ -50,10 +65,54 @@ public class RepositoryService {
         return extensionRepo.findByPublisherOrderByNameAsc(publisher);
     }
 
+    /**
+     * Find the extensions with the given ids of the form {@code publisher.name} with a single query.
+     * Ids that do not have this form are ignored.
+     */
+    public Streamable<Extension> findExtensions(Collection<String> extensionIds) {
+        var publisherNames = new HashSet<String>();
+        var names = new HashSet<String>();
+        for (var id : extensionIds) {
+            var split = id.split("\\.");
+            if (split.length == 2) {
+                publisherNames.add(split[0]);
+                names.add(split[1]);
+            }
+        }
+        if (publisherNames.isEmpty())
+            return Streamable.empty();
+        // The query matches all combinations of publisher and extension names, so filter the exact ids
+        return extensionRepo.findByPublisherNameInAndNameIn(publisherNames, names)
+                .filter(extension -> extensionIds.contains(extension.getPublisher().getName() + "." + extension.getName()));
+    }
+
+    public Streamable<Extension> findExtensionsByIds(Collection<Long> ids) {
+        return extensionRepo.findByIdIn(ids);
+    }
+
     public Streamable<Extension> findAllExtensions() {
         return extensionRepo.findAll();
     }
 
+    /**
+     * Find the next extensions ordered by id, starting after the given id. Their publishers and
+     * latest versions including categories and tags are loaded with three queries in total.
+     */
+    public Streamable<Extension> findExtensionsForIndexing(long afterId, int limit) {
+        var extensions = extensionRepo.findByIdGreaterThanWithLatest(afterId, PageRequest.of(0, limit));
+        if (!extensions.isEmpty()) {
+            // Two list collections cannot be fetched in the same query
+            var versions = CollectionUtil.map(extensions, Extension::getLatest);
+            extensionVersionRepo.fetchCategories(versions).toList();
+            extensionVersionRepo.fetchTags(versions).toList();
+        }
+        return Streamable.of(extensions);
+    }
+
+    public long countExtensions() {
+        return extensionRepo.count();
+    }
+
     public ExtensionVersion findVersion(String version, Extension extension) {
         return extensionVersionRepo.findByVersionAndExtension(version, extension);
     }
@@ -62,8 +121,48 @@ public class RepositoryService {
         return extensionVersionRepo.findByVersionAndExtensionNameAndExtensionPublisherName(version, extensionName, publisherName);
     }
 
+    /**
+     * Find the package file name of the given version, or of the latest version if the
+     * version is {@code null}, without loading the entities.
+     */
+    public String findExtensionFileName(String version, String extensionName, String publisherName) {
+        if (version == null)
+            return extensionRepo.findLatestExtensionFileName(extensionName, publisherName);
+        return extensionVersionRepo.findExtensionFileName(version, extensionName, publisherName);
+    }
+
+    /**
+     * Find all versions of an extension, starting with the highest version.
+     */
     public Streamable<ExtensionVersion> findVersions(Extension extension) {
-        return extensionVersionRepo.findByExtension(extension);
+        return extensionVersionRepo.findByExtensionOrderByVersionKeyDesc(extension);
+    }
+
+    /**
+     * Find the version strings of an extension, starting with the highest version.
+     */
+    public Streamable<String> findVersionStrings(Extension extension) {
+        return extensionVersionRepo.findVersionStringsByExtension(extension);
+    }
+
+    public String findMaxVersionKey(Extension extension) {
+        return extensionVersionRepo.findMaxVersionKeyByExtension(extension);
+    }
+
+    /**
+     * Find at most {@code limit} versions without a version key whose id is greater
+     * than {@code afterId}, ordered by id.
+     */
+    public List<ExtensionVersion> findVersionsWithoutKey(long afterId, int limit) {
+        return extensionVersionRepo.findByVersionKeyIsNullAndIdGreaterThanOrderById(afterId, PageRequest.of(0, limit));
+    }
+
+    public Streamable<ExtensionVersion> findVersionsWithUnresolvedDependency(String extensionId) {
+        return extensionVersionRepo.findByUnresolvedDependency(extensionId);
+    }
+
+    public Streamable<ExtensionVersion> findVersionsWithUnresolvedBundledExtension(String extensionId) {
+        return extensionVersionRepo.findByUnresolvedBundledExtension(extensionId);
     }
 
     public ExtensionBinary findBinary(ExtensionVersion extVersion) {
@@ -78,6 +177,22 @@ public class RepositoryService {
         return extensionReadmeRepo.findByExtension(extVersion);
     }
 
+    public Streamable<FileVariant> findFileVariants(String sourceHash) {
+        return fileVariantRepo.findBySourceHash(sourceHash);
+    }
+
+    public FileVariant findFileVariant(String sourceHash, String variant) {
+        return fileVariantRepo.findFirstBySourceHashAndVariant(sourceHash, variant);
+    }
+
+    public SearchIndexRebuild findSearchIndexRebuild() {
+        return searchIndexRebuildRepo.findFirstByOrderByIdAsc();
+    }
+
+    public Streamable<SearchIndexUpdate> findDueSearchIndexUpdates(LocalDateTime now, int limit) {
+        return searchIndexUpdateRepo.findDueForUpdate(now, limit);
+    }
+
     public Streamable<ExtensionReview> findReviews(Extension extension) {
         return extensionReviewRepo.findByExtension(extension);
     }
@@ -86,6 +201,20 @@ public class RepositoryService {
         return extensionReviewRepo.countByExtension(extension);
     }
 
+    /**
+     * Count the reviews of the given extensions with a single query. The result maps
+     * extension ids to counts and has no entries for extensions without reviews.
+     */
+    public Map<Long, Long> countReviews(Collection<Extension> extensions) {
+        var counts = new HashMap<Long, Long>();
+        if (!extensions.isEmpty()) {
+            for (var row : extensionReviewRepo.countByExtensionIn(extensions)) {
+                counts.put((Long) row[0], (Long) row[1]);
+            }
+        }
+        return counts;
+    }
+
     public Streamable<UserData> findAllUsers() {
         return userDataRepo.findAll();
     }
@@ -0,0 +1,25 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.repositories;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.util.Streamable;
+
+import io.typefox.extreg.entities.SearchIndexUpdate;
+
+public interface SearchIndexUpdateRepository extends Repository<SearchIndexUpdate, Long> {
+
+    // Skip rows locked by other server instances, so each update is dispatched only once
+    @Query(value = "select * from search_index_update where next_attempt <= ?1 order by id limit ?2 for update skip locked",
+            nativeQuery = true)
+    Streamable<SearchIndexUpdate> findDueForUpdate(LocalDateTime now, int limit);
+
+}
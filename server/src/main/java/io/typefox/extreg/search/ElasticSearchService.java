@@ -0,0 +1,120 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.Fuzziness;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Search backed by an external Elasticsearch server, configured with
+ * {@code OVSX_ELASTICSEARCH_HOST}.
+ */
+@Component
+@ConditionalOnProperty(name = "OVSX_SEARCH_BACKEND", havingValue = "elasticsearch", matchIfMissing = true)
+public class ElasticSearchService implements SearchService {
+
+    private static final String INDEX_NAME = "extensions";
+
+    @Autowired
+    ElasticsearchOperations searchOperations;
+
+    @Autowired
+    RestHighLevelClient client;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Override
+    public void createIndex() {
+        searchOperations.createIndex(ExtensionSearch.class);
+    }
+
+    @Override
+    public void index(Collection<ExtensionSearch> entries) {
+        if (entries.isEmpty())
+            return;
+        var indexQueries = entries.stream().map(entry ->
+            new IndexQueryBuilder()
+                .withObject(entry)
+                .build()
+        ).collect(Collectors.toList());
+        searchOperations.bulkIndex(indexQueries);
+        // Make the entries searchable now instead of after the refresh interval,
+        // so results cached right after this call are not stale
+        searchOperations.refresh(ExtensionSearch.class);
+    }
+
+    @Override
+    public SearchPage search(String queryString, String category, int size, int offset, SearchCursor after) {
+        var query = QueryBuilders.boolQuery();
+        if (Strings.isNullOrEmpty(queryString)) {
+            query.must(QueryBuilders.matchAllQuery());
+        } else {
+            var multiMatchQuery = QueryBuilders.multiMatchQuery(queryString)
+                    .field("name").boost(5)
+                    .field("displayName").boost(5)
+                    .field("tags").boost(3)
+                    .field("publisher").boost(2)
+                    .field("description")
+                    .fuzziness(Fuzziness.AUTO)
+                    .prefixLength(2);
+            query.must(multiMatchQuery);
+        }
+        if (!Strings.isNullOrEmpty(category)) {
+            query.filter(QueryBuilders.matchPhraseQuery("categories", category));
+        }
+        // The numeric extension id breaks ties between equal scores, so search_after is unambiguous.
+        // It is sorted with doc values, unlike the _id field, which needs fielddata and sorts as a string.
+        var source = new SearchSourceBuilder()
+                .query(query)
+                .size(size)
+                .sort(SortBuilders.scoreSort())
+                .sort(SortBuilders.fieldSort("id").order(SortOrder.ASC));
+        if (after != null)
+            source.searchAfter(new Object[] { after.getScore(), after.getExtensionId() });
+        else
+            source.from(offset);
+
+        try {
+            var response = client.search(new SearchRequest(INDEX_NAME).source(source), RequestOptions.DEFAULT);
+            var hits = response.getHits().getHits();
+            var content = new ArrayList<ExtensionSearch>(hits.length);
+            for (var hit : hits) {
+                content.add(objectMapper.readValue(hit.getSourceAsString(), ExtensionSearch.class));
+            }
+            SearchCursor next = null;
+            if (hits.length > 0 && hits.length == size) {
+                var sortValues = hits[hits.length - 1].getSortValues();
+                next = new SearchCursor(((Number) sortValues[0]).floatValue(), ((Number) sortValues[1]).longValue());
+            }
+            return new SearchPage(content, response.getHits().getTotalHits(), next);
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+}
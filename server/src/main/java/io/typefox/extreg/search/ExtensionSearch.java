@@ -11,11 +11,19 @@ import java.util.List;
 
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
 
+import io.typefox.extreg.json.SearchEntryJson;
+
+/**
+ * Search index entry of an extension. Besides the searched fields, it holds everything
+ * needed for a search result entry, so search results are served from the index alone.
+ */
 @Document(indexName = "extensions")
 public class ExtensionSearch {
 
-    @Field(index = false)
+    // Not searched, but sorted with doc values to break ties between equal scores
+    @Field(type = FieldType.Long, index = false)
     public long id;
 
     public String name;
@@ -31,4 +39,34 @@ public class ExtensionSearch {
 
     public List<String> tags;
 
-}
\ No newline at end of file
+    @Field(type = FieldType.Keyword, index = false)
+    public String version;
+
+    @Field(type = FieldType.Keyword, index = false)
+    public String timestamp;
+
+    @Field(type = FieldType.Double, index = false)
+    public Double averageRating;
+
+    @Field(type = FieldType.Keyword, index = false)
+    public String iconFileName;
+
+    @Field(type = FieldType.Keyword, index = false)
+    public String extensionFileName;
+
+    /**
+     * Convert to a search entry JSON object without URLs.
+     */
+    public SearchEntryJson toSearchEntryJson() {
+        var entry = new SearchEntryJson();
+        entry.name = this.name;
+        entry.publisher = this.publisher;
+        entry.averageRating = this.averageRating;
+        entry.version = this.version;
+        entry.timestamp = this.timestamp;
+        entry.displayName = this.displayName;
+        entry.description = this.description;
+        return entry;
+    }
+
+}
@@ -0,0 +1,287 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.google.common.base.Strings;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.QueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Search backed by an embedded Lucene index in a memory-mapped directory, so queries
+ * are answered in-process without a separate search server. The index is opened for
+ * writing by this server only, which makes this backend suitable for single-node
+ * deployments. It is stored at {@code OVSX_LUCENE_INDEX_PATH}, which must be set when
+ * this backend is selected, and can be rebuilt from the database with
+ * {@code OVSX_INIT_SEARCH_INDEX}. Indexes written before results were sorted by extension
+ * id lack the doc values of the {@code id} field, so they must be rebuilt once.
+ */
+@Component
+@ConditionalOnProperty(name = "OVSX_SEARCH_BACKEND", havingValue = "lucene")
+public class LuceneSearchService implements SearchService {
+
+    /** The searched fields with their boosts, as in {@link ElasticSearchService}. */
+    private static final Map<String, Float> FIELD_BOOSTS = new LinkedHashMap<>();
+    static {
+        FIELD_BOOSTS.put("name", 5f);
+        FIELD_BOOSTS.put("displayName", 5f);
+        FIELD_BOOSTS.put("tags", 3f);
+        FIELD_BOOSTS.put("publisher", 2f);
+        FIELD_BOOSTS.put("description", 1f);
+    }
+
+    private static final int FUZZY_PREFIX_LENGTH = 2;
+
+    /** Ties between equal scores are broken by the extension id, so cursors are unambiguous. */
+    private static final Sort SORT = new Sort(SortField.FIELD_SCORE, new SortField("id", SortField.Type.LONG));
+
+    Logger logger = LoggerFactory.getLogger(LuceneSearchService.class);
+
+    @Value("#{environment.OVSX_LUCENE_INDEX_PATH}")
+    String indexPath;
+
+    // Like the standard analyzer of Elasticsearch, this does not remove stop words
+    private final Analyzer analyzer = new StandardAnalyzer(CharArraySet.EMPTY_SET);
+    private final QueryBuilder queryBuilder = new QueryBuilder(analyzer);
+    private MMapDirectory directory;
+    private IndexWriter indexWriter;
+    private SearcherManager searcherManager;
+
+    @PostConstruct
+    public void init() throws IOException {
+        // A temporary directory would lose the index, so there is no default location
+        if (Strings.isNullOrEmpty(indexPath))
+            throw new IllegalStateException("OVSX_LUCENE_INDEX_PATH must be set to use the Lucene search backend.");
+        var path = Paths.get(indexPath);
+        Files.createDirectories(path);
+        logger.info("Opening search index at " + path);
+        directory = new MMapDirectory(path);
+        var config = new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        indexWriter = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(indexWriter, null);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        indexWriter.close();
+        directory.close();
+    }
+
+    @Override
+    public void createIndex() {
+        try {
+            indexWriter.commit();
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+    @Override
+    public void index(Collection<ExtensionSearch> entries) {
+        if (entries.isEmpty())
+            return;
+        try {
+            for (var entry : entries) {
+                indexWriter.updateDocument(new Term("id", Long.toString(entry.id)), toDocument(entry));
+            }
+            indexWriter.commit();
+            searcherManager.maybeRefresh();
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+    @Override
+    public SearchPage search(String queryString, String category, int size, int offset, SearchCursor after) {
+        var query = createQuery(queryString, category);
+        try {
+            var searcher = searcherManager.acquire();
+            try {
+                TopFieldDocs topDocs;
+                int start;
+                if (after != null) {
+                    var afterDoc = new FieldDoc(Integer.MAX_VALUE, after.getScore(),
+                            new Object[] { after.getScore(), after.getExtensionId() });
+                    topDocs = searcher.searchAfter(afterDoc, query, Math.max(size, 1), SORT, true, false);
+                    start = 0;
+                } else {
+                    topDocs = searcher.search(query, offset + Math.max(size, 1), SORT, true, false);
+                    start = offset;
+                }
+                var content = new ArrayList<ExtensionSearch>();
+                for (int i = start; i < topDocs.scoreDocs.length; i++) {
+                    content.add(toSearch(searcher.doc(topDocs.scoreDocs[i].doc)));
+                }
+                SearchCursor next = null;
+                if (!content.isEmpty() && content.size() == size) {
+                    var fields = ((FieldDoc) topDocs.scoreDocs[topDocs.scoreDocs.length - 1]).fields;
+                    next = new SearchCursor((Float) fields[0], (Long) fields[1]);
+                }
+                return new SearchPage(content, topDocs.totalHits, next);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+    private Query createQuery(String queryString, String category) {
+        var builder = new BooleanQuery.Builder();
+        if (Strings.isNullOrEmpty(queryString))
+            builder.add(new MatchAllDocsQuery(), Occur.MUST);
+        else
+            builder.add(createMultiMatchQuery(queryString), Occur.MUST);
+        if (!Strings.isNullOrEmpty(category)) {
+            var categoryQuery = queryBuilder.createPhraseQuery("categories", category);
+            if (categoryQuery != null)
+                builder.add(categoryQuery, Occur.FILTER);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Equivalent of the {@code best_fields} multi-match query of Elasticsearch: the score
+     * of a document is the score of its best matching field.
+     */
+    private Query createMultiMatchQuery(String queryString) {
+        var fieldQueries = new ArrayList<Query>(FIELD_BOOSTS.size());
+        for (var entry : FIELD_BOOSTS.entrySet()) {
+            var field = entry.getKey();
+            var termQueries = new BooleanQuery.Builder();
+            for (var token : analyze(field, queryString)) {
+                termQueries.add(createFuzzyQuery(new Term(field, token)), Occur.SHOULD);
+            }
+            fieldQueries.add(new BoostQuery(termQueries.build(), entry.getValue()));
+        }
+        return new DisjunctionMaxQuery(fieldQueries, 0);
+    }
+
+    /**
+     * Allow the same number of edits as the {@code AUTO} fuzziness of Elasticsearch.
+     */
+    private Query createFuzzyQuery(Term term) {
+        var length = term.text().codePointCount(0, term.text().length());
+        if (length <= 2)
+            return new TermQuery(term);
+        var maxEdits = length <= 5 ? 1 : 2;
+        return new FuzzyQuery(term, maxEdits, FUZZY_PREFIX_LENGTH);
+    }
+
+    private List<String> analyze(String field, String text) {
+        var tokens = new ArrayList<String>();
+        try (var tokenStream = analyzer.tokenStream(field, text)) {
+            var termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                tokens.add(termAttribute.toString());
+            }
+            tokenStream.end();
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+        return tokens;
+    }
+
+    private Document toDocument(ExtensionSearch entry) {
+        var document = new Document();
+        document.add(new StringField("id", Long.toString(entry.id), Field.Store.YES));
+        document.add(new NumericDocValuesField("id", entry.id));
+        addText(document, "name", entry.name);
+        addText(document, "publisher", entry.publisher);
+        addText(document, "displayName", entry.displayName);
+        addText(document, "description", entry.description);
+        if (entry.categories != null)
+            entry.categories.forEach(category -> addText(document, "categories", category));
+        if (entry.tags != null)
+            entry.tags.forEach(tag -> addText(document, "tags", tag));
+        addStored(document, "version", entry.version);
+        addStored(document, "timestamp", entry.timestamp);
+        addStored(document, "iconFileName", entry.iconFileName);
+        addStored(document, "extensionFileName", entry.extensionFileName);
+        if (entry.averageRating != null)
+            document.add(new StoredField("averageRating", entry.averageRating));
+        return document;
+    }
+
+    private void addText(Document document, String field, String value) {
+        if (value != null)
+            document.add(new TextField(field, value, Field.Store.YES));
+    }
+
+    private void addStored(Document document, String field, String value) {
+        if (value != null)
+            document.add(new StoredField(field, value));
+    }
+
+    private ExtensionSearch toSearch(Document document) {
+        var search = new ExtensionSearch();
+        search.id = Long.parseLong(document.get("id"));
+        search.name = document.get("name");
+        search.publisher = document.get("publisher");
+        search.displayName = document.get("displayName");
+        search.description = document.get("description");
+        search.categories = Arrays.asList(document.getValues("categories"));
+        search.tags = Arrays.asList(document.getValues("tags"));
+        search.version = document.get("version");
+        search.timestamp = document.get("timestamp");
+        search.iconFileName = document.get("iconFileName");
+        search.extensionFileName = document.get("extensionFileName");
+        var averageRating = document.getField("averageRating");
+        if (averageRating != null)
+            search.averageRating = averageRating.numericValue().doubleValue();
+        return search;
+    }
+
+}
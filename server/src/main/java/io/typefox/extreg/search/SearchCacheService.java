@@ -0,0 +1,108 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.typefox.extreg.json.SearchResultJson;
+
+/**
+ * Caches the results of frequent searches, e.g. the landing page and the category pages.
+ * Every change of the search index starts a new generation, which is part of the cache
+ * keys, so results of earlier generations are never returned again. Entries also expire
+ * after a fixed time, which bounds the staleness caused by index changes made by other
+ * server instances. Hit and miss counts are exposed as {@code cache.*} metrics with the
+ * tag {@code cache=search}.
+ */
+@Component
+public class SearchCacheService {
+
+    @Value("#{environment.OVSX_SEARCH_CACHE_SIZE ?: 1000}")
+    long maxCacheSize;
+
+    @Value("#{environment.OVSX_SEARCH_CACHE_TTL ?: 60}")
+    long timeToLiveSeconds;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private Cache<String, SearchResultJson> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxCacheSize)
+                .expireAfterWrite(timeToLiveSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "search");
+    }
+
+    /**
+     * Return the cached result of the given search, or compute it with the given supplier.
+     * Concurrent requests for the same search wait for a single computation.
+     */
+    public SearchResultJson get(String queryString, String category, int size, int offset,
+            Supplier<SearchResultJson> loader) {
+        var key = getKey(queryString, category, size, offset);
+        try {
+            return cache.get(key, loader::get);
+        } catch (ExecutionException | UncheckedExecutionException exc) {
+            if (exc.getCause() instanceof RuntimeException)
+                throw (RuntimeException) exc.getCause();
+            throw new RuntimeException(exc.getCause());
+        }
+    }
+
+    /**
+     * Start a new generation. This must be called after the search index has been changed.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /**
+     * The query is normalized the same way as by the search analyzers, so requests
+     * that differ only in letter case or white space share a cache entry.
+     */
+    private String getKey(String queryString, String category, int size, int offset) {
+        // Line breaks cannot occur in the normalized values
+        return String.join("\n",
+                Long.toString(generation.get()),
+                normalize(queryString),
+                normalize(category),
+                Integer.toString(size),
+                Integer.toString(offset));
+    }
+
+    static String normalize(String value) {
+        if (Strings.isNullOrEmpty(value))
+            return "";
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -9,12 +9,14 @@ package io.typefox.extreg.search;
 
 import org.elasticsearch.client.RestHighLevelClient;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.elasticsearch.client.ClientConfiguration;
 import org.springframework.data.elasticsearch.client.RestClients;
 import org.springframework.data.elasticsearch.config.AbstractElasticsearchConfiguration;
 
 @Configuration
+@ConditionalOnProperty(name = "OVSX_SEARCH_BACKEND", havingValue = "elasticsearch", matchIfMissing = true)
 public class SearchConfig extends AbstractElasticsearchConfiguration {
 
     @Value("#{environment.OVSX_ELASTICSEARCH_HOST}")
@@ -0,0 +1,76 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import javax.annotation.Nullable;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Position in a search result after which the next page starts. Results are sorted by
+ * descending score and then by ascending extension id, so the position is unambiguous.
+ * Clients see the cursor only as an opaque string, which includes a hash of the normalized
+ * query and category, so a cursor cannot be used to continue a different search.
+ */
+public class SearchCursor {
+
+    /**
+     * Parse a cursor string that was created with {@link #encode(String, String)} for the
+     * same query and category.
+     * 
+     * @throws IllegalArgumentException if the string is not a valid cursor for the query
+     */
+    public static SearchCursor decode(String value, @Nullable String queryString, @Nullable String category) {
+        try {
+            var decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            var parts = decoded.split(":", -1);
+            if (parts.length != 3)
+                throw new IllegalArgumentException("Invalid search cursor.");
+            if (!parts[2].equals(hashQuery(queryString, category)))
+                throw new IllegalArgumentException("The search cursor belongs to a different query.");
+            var score = Float.parseFloat(parts[0]);
+            var extensionId = Long.parseLong(parts[1]);
+            return new SearchCursor(score, extensionId);
+        } catch (NumberFormatException exc) {
+            throw new IllegalArgumentException("Invalid search cursor.", exc);
+        }
+    }
+
+    private static String hashQuery(String queryString, String category) {
+        var normalized = SearchCacheService.normalize(queryString) + '\n' + SearchCacheService.normalize(category);
+        return Hashing.murmur3_32().hashString(normalized, StandardCharsets.UTF_8).toString();
+    }
+
+    private final float score;
+    private final long extensionId;
+
+    public SearchCursor(float score, long extensionId) {
+        this.score = score;
+        this.extensionId = extensionId;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public long getExtensionId() {
+        return extensionId;
+    }
+
+    /**
+     * Create a cursor string that is valid for the given query and category.
+     */
+    public String encode(@Nullable String queryString, @Nullable String category) {
+        var value = Float.toString(score) + ':' + extensionId + ':' + hashQuery(queryString, category);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,105 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.typefox.extreg.entities.Extension;
+import io.typefox.extreg.entities.SearchIndexUpdate;
+import io.typefox.extreg.repositories.RepositoryService;
+
+/**
+ * Updates the search index after the transactions that changed the indexed data have
+ * been committed. The changes are recorded in an outbox table within the changing
+ * transaction, so they are neither lost when the server stops nor applied when the
+ * transaction is rolled back. A scheduled task sends them to the search index in
+ * bulk requests and retries failed requests with increasing delays.
+ */
+@Component
+public class SearchIndexDispatcher {
+
+    private static final int BATCH_SIZE = 100;
+    private static final long MAX_RETRY_DELAY_SECONDS = 300;
+
+    Logger logger = LoggerFactory.getLogger(SearchIndexDispatcher.class);
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    RepositoryService repositories;
+
+    @Autowired
+    SearchService search;
+
+    @Autowired
+    SearchCacheService searchCache;
+
+    @Autowired
+    SuggestionService suggestions;
+
+    /**
+     * Record that the search index entries of the given extensions must be updated.
+     * This must be called within the transaction that changes the extensions.
+     */
+    public void enqueue(Collection<Extension> extensions) {
+        var now = LocalDateTime.now(ZoneId.of("UTC"));
+        for (var extension : extensions) {
+            var update = new SearchIndexUpdate();
+            update.setExtensionId(extension.getId());
+            update.setNextAttempt(now);
+            entityManager.persist(update);
+        }
+    }
+
+    @Scheduled(fixedDelay = 1000)
+    @Transactional
+    public void dispatch() {
+        var now = LocalDateTime.now(ZoneId.of("UTC"));
+        var updates = repositories.findDueSearchIndexUpdates(now, BATCH_SIZE).toList();
+        if (updates.isEmpty())
+            return;
+        // Multiple updates of the same extension are sent only once
+        var extensionIds = updates.stream().map(SearchIndexUpdate::getExtensionId).collect(Collectors.toSet());
+        var extensions = repositories.findExtensionsByIds(extensionIds).toList();
+        try {
+            index(extensions);
+            updates.forEach(entityManager::remove);
+        } catch (RuntimeException exc) {
+            logger.warn("Failed to update the search index, will retry: " + exc.getMessage());
+            for (var update : updates) {
+                update.setAttempts(update.getAttempts() + 1);
+                var delay = Math.min(1L << Math.min(update.getAttempts(), 16), MAX_RETRY_DELAY_SECONDS);
+                update.setNextAttempt(now.plusSeconds(delay));
+            }
+        }
+    }
+
+    /**
+     * Update the search index entries of the given extensions immediately. Cached search
+     * results are discarded afterwards, and the suggestions are updated as well.
+     */
+    public void index(Collection<Extension> extensions) {
+        search.index(extensions.stream().map(Extension::toSearch).collect(Collectors.toList()));
+        searchCache.invalidate();
+        suggestions.update(extensions);
+    }
+
+}
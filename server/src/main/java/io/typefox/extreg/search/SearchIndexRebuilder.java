@@ -0,0 +1,159 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.persistence.EntityManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.typefox.extreg.entities.Extension;
+import io.typefox.extreg.entities.SearchIndexRebuild;
+import io.typefox.extreg.repositories.RepositoryService;
+
+/**
+ * Rebuilds the search index from the database. Extensions are read in batches ordered by
+ * id, each in its own short transaction, so the memory used does not grow with the number
+ * of extensions. The batches are sent to the search index by a small pool of workers.
+ * The highest id up to which all batches have been indexed is saved after each batch,
+ * so a rebuild that was interrupted continues from there on the next start.
+ */
+@Component
+public class SearchIndexRebuilder {
+
+    private static final long PROGRESS_LOG_INTERVAL_MILLIS = 10_000;
+
+    Logger logger = LoggerFactory.getLogger(SearchIndexRebuilder.class);
+
+    @Value("#{environment.OVSX_REINDEX_BATCH_SIZE ?: 500}")
+    int batchSize;
+
+    @Value("#{environment.OVSX_REINDEX_WORKERS ?: 4}")
+    int workers;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    TransactionTemplate transactions;
+
+    @Autowired
+    RepositoryService repositories;
+
+    @Autowired
+    SearchService search;
+
+    @Autowired
+    SearchCacheService searchCache;
+
+    /**
+     * Index all extensions, continuing an interrupted rebuild if there is one.
+     * This must not be called within a transaction.
+     */
+    public void rebuild() {
+        var startTime = System.currentTimeMillis();
+        var rebuildId = transactions.execute(status -> startRebuild().getId());
+        var total = transactions.execute(status -> repositories.countExtensions());
+        var executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers), new ThreadPoolExecutor.CallerRunsPolicy());
+        // Start ids of the batches that have not been indexed yet
+        var pendingBatches = new ConcurrentSkipListSet<Long>();
+        var failure = new AtomicReference<RuntimeException>();
+        var indexed = new AtomicLong();
+        var lastProgressLog = new AtomicLong(startTime);
+        long lastId = transactions.execute(status -> entityManager.find(SearchIndexRebuild.class, rebuildId).getLastExtensionId());
+        try {
+            while (failure.get() == null) {
+                var afterId = lastId;
+                var indexedUpTo = pendingBatches.isEmpty() ? afterId : pendingBatches.first();
+                List<ExtensionSearch> batch = transactions.execute(status -> {
+                    entityManager.find(SearchIndexRebuild.class, rebuildId).setLastExtensionId(indexedUpTo);
+                    return repositories.findExtensionsForIndexing(afterId, batchSize)
+                            .map(Extension::toSearch)
+                            .toList();
+                });
+                if (batch.isEmpty())
+                    break;
+                lastId = batch.get(batch.size() - 1).id;
+                pendingBatches.add(afterId);
+                executor.execute(() -> {
+                    try {
+                        search.index(batch);
+                        pendingBatches.remove(afterId);
+                        logProgress(indexed.addAndGet(batch.size()), total, lastProgressLog);
+                    } catch (RuntimeException exc) {
+                        failure.compareAndSet(null, exc);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.HOURS);
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        searchCache.invalidate();
+        if (failure.get() != null) {
+            var indexedUpTo = pendingBatches.isEmpty() ? lastId : pendingBatches.first();
+            transactions.execute(status -> {
+                entityManager.find(SearchIndexRebuild.class, rebuildId).setLastExtensionId(indexedUpTo);
+                return null;
+            });
+            logger.error("Rebuilding the search index failed after extension " + indexedUpTo
+                    + ", it will continue from there on the next start.", failure.get());
+        } else {
+            transactions.execute(status -> {
+                entityManager.remove(entityManager.find(SearchIndexRebuild.class, rebuildId));
+                return null;
+            });
+            var duration = Duration.ofMillis(System.currentTimeMillis() - startTime);
+            logger.info("Indexed " + indexed.get() + " extensions in " + duration.getSeconds() + " seconds.");
+        }
+    }
+
+    private SearchIndexRebuild startRebuild() {
+        var rebuild = repositories.findSearchIndexRebuild();
+        if (rebuild != null) {
+            logger.info("Continuing search index rebuild from " + rebuild.getStarted()
+                    + " after extension " + rebuild.getLastExtensionId() + "...");
+            return rebuild;
+        }
+        logger.info("Rebuilding search index...");
+        rebuild = new SearchIndexRebuild();
+        rebuild.setStarted(LocalDateTime.now(ZoneId.of("UTC")));
+        entityManager.persist(rebuild);
+        return rebuild;
+    }
+
+    private void logProgress(long indexed, long total, AtomicLong lastProgressLog) {
+        var now = System.currentTimeMillis();
+        var last = lastProgressLog.get();
+        if (now - last >= PROGRESS_LOG_INTERVAL_MILLIS && lastProgressLog.compareAndSet(last, now)) {
+            logger.info("Indexed " + indexed + " of " + total + " extensions...");
+        }
+    }
+
+}
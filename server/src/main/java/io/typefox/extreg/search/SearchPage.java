@@ -0,0 +1,46 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * A page of search results.
+ */
+public class SearchPage {
+
+    private final List<ExtensionSearch> content;
+    private final long totalHits;
+    private final SearchCursor next;
+
+    public SearchPage(List<ExtensionSearch> content, long totalHits, @Nullable SearchCursor next) {
+        this.content = content;
+        this.totalHits = totalHits;
+        this.next = next;
+    }
+
+    public List<ExtensionSearch> getContent() {
+        return content;
+    }
+
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * The position after the last entry of this page, or {@code null} if the page
+     * was not filled, so there are no more results.
+     */
+    @Nullable
+    public SearchCursor getNext() {
+        return next;
+    }
+
+}
@@ -0,0 +1,40 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+
+/**
+ * Full-text search over the published extensions. The implementation is selected with
+ * the {@code OVSX_SEARCH_BACKEND} environment variable: {@code elasticsearch} (the default)
+ * or {@code lucene} for an embedded index.
+ */
+public interface SearchService {
+
+    /**
+     * Create the search index if it does not exist yet.
+     */
+    void createIndex();
+
+    /**
+     * Add the given entries to the index, replacing existing entries with the same id.
+     * The entries are visible to searches when this returns.
+     */
+    void index(Collection<ExtensionSearch> entries);
+
+    /**
+     * Find extensions matching the given query and category. Both are optional; if the
+     * query is empty, all extensions in the category match. The results start at the given
+     * offset, or right after the given cursor if it is not {@code null}. Continuing with
+     * a cursor costs a single query however deep the page is.
+     */
+    SearchPage search(String queryString, String category, int size, int offset, @Nullable SearchCursor after);
+
+}
@@ -0,0 +1,46 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.util.Set;
+
+import io.typefox.extreg.json.SuggestionJson;
+
+/**
+ * Entry of the suggestion index.
+ */
+public class Suggestion {
+
+    public long id;
+
+    public String name;
+
+    public String publisher;
+
+    public String displayName;
+
+    public String iconFileName;
+
+    /** The sum of all review ratings, so well rated extensions with many reviews come first. */
+    public double popularity;
+
+    // The normalized terms under which this is found
+    Set<String> terms;
+
+    /**
+     * Convert to a suggestion JSON object without URLs.
+     */
+    public SuggestionJson toSuggestionJson() {
+        var json = new SuggestionJson();
+        json.name = this.name;
+        json.publisher = this.publisher;
+        json.displayName = this.displayName;
+        return json;
+    }
+
+}
@@ -0,0 +1,124 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Sorted map from terms to suggestions. Each key is a term followed by a separator and
+ * the extension id, so several extensions can share a term. Short prefixes match a large
+ * part of the index, so the suggestions are also kept ranked for each prefix of up to
+ * {@value #RANKED_PREFIX_LENGTH} characters. The best matches of such a prefix are read
+ * from the start of its ranked set instead of ranking the whole range of terms.
+ */
+class SuggestionIndex {
+
+    static final int RANKED_PREFIX_LENGTH = 3;
+
+    private static final char SEPARATOR = '\0';
+
+    /** The most popular suggestions come first, ties are broken by name and id. */
+    private static final Comparator<Suggestion> RANKING = Comparator
+            .comparingDouble((Suggestion s) -> -s.popularity)
+            .thenComparing(s -> s.name)
+            .thenComparingLong(s -> s.id);
+
+    private final ConcurrentSkipListMap<String, Suggestion> terms = new ConcurrentSkipListMap<>();
+    private final Map<String, Set<Suggestion>> rankedPrefixes = new ConcurrentHashMap<>();
+    private final Map<Long, Suggestion> extensions = new ConcurrentHashMap<>();
+
+    /**
+     * Add a suggestion, replacing the previous suggestion of the same extension.
+     */
+    void put(Suggestion suggestion) {
+        var previous = extensions.put(suggestion.id, suggestion);
+        if (previous != null) {
+            for (var term : previous.terms) {
+                terms.remove(term + SEPARATOR + previous.id);
+            }
+            for (var prefix : getRankedPrefixes(previous)) {
+                var ranked = rankedPrefixes.get(prefix);
+                if (ranked != null)
+                    ranked.remove(previous);
+            }
+        }
+        for (var term : suggestion.terms) {
+            terms.put(term + SEPARATOR + suggestion.id, suggestion);
+        }
+        for (var prefix : getRankedPrefixes(suggestion)) {
+            rankedPrefixes.computeIfAbsent(prefix, p -> new ConcurrentSkipListSet<>(RANKING)).add(suggestion);
+        }
+    }
+
+    /**
+     * Return the most popular suggestions with a term starting with the given normalized prefix.
+     */
+    List<Suggestion> suggest(String prefix, int size) {
+        if (prefix.length() <= RANKED_PREFIX_LENGTH)
+            return suggestRanked(prefix, size);
+        var matches = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+        // Keep the best suggestions in a heap that yields the least popular one first, so it is replaced first
+        var best = new PriorityQueue<Suggestion>(size + 1, RANKING.reversed());
+        var seen = new HashSet<Long>();
+        for (var suggestion : matches) {
+            if (!seen.add(suggestion.id))
+                continue;
+            best.add(suggestion);
+            if (best.size() > size)
+                best.poll();
+        }
+        var result = new ArrayList<Suggestion>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private List<Suggestion> suggestRanked(String prefix, int size) {
+        var result = new ArrayList<Suggestion>(size);
+        var ranked = rankedPrefixes.get(prefix);
+        if (ranked == null)
+            return result;
+        // A concurrent update can briefly leave two suggestions of an extension in the set
+        var seen = new HashSet<Long>();
+        for (var suggestion : ranked) {
+            if (seen.add(suggestion.id))
+                result.add(suggestion);
+            if (result.size() == size)
+                break;
+        }
+        return result;
+    }
+
+    private Set<String> getRankedPrefixes(Suggestion suggestion) {
+        var prefixes = new LinkedHashSet<String>();
+        for (var term : suggestion.terms) {
+            for (int length = 1; length <= Math.min(term.length(), RANKED_PREFIX_LENGTH); length++) {
+                prefixes.add(term.substring(0, length));
+            }
+        }
+        return prefixes;
+    }
+
+    int size() {
+        return extensions.size();
+    }
+
+}
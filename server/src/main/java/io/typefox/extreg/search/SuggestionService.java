@@ -0,0 +1,168 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.google.common.base.Strings;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.typefox.extreg.entities.Extension;
+import io.typefox.extreg.repositories.RepositoryService;
+
+/**
+ * Suggests extensions for a search prefix from an in-memory index, without querying the
+ * search backend or the database. The names, display names (also word by word), publishers
+ * and tags of all extensions are kept in a {@link SuggestionIndex}. The index is updated
+ * together with the search index and rebuilt periodically to pick up changes that were
+ * dispatched by other server instances.
+ */
+@Component
+public class SuggestionService {
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    Logger logger = LoggerFactory.getLogger(SuggestionService.class);
+
+    @Autowired
+    TransactionTemplate transactions;
+
+    @Autowired
+    RepositoryService repositories;
+
+    private volatile SuggestionIndex index = new SuggestionIndex();
+    // Updates made while a rebuild is running, applied again after it has finished
+    private List<Suggestion> rebuildUpdates;
+
+    @EventListener
+    public void initSuggestions(ApplicationStartedEvent event) {
+        rebuild();
+    }
+
+    /**
+     * Replace the index with a new one built from the database. Extensions are read in
+     * batches, each in its own transaction.
+     */
+    @Scheduled(initialDelay = 600_000, fixedDelay = 600_000)
+    public void rebuild() {
+        synchronized (this) {
+            if (rebuildUpdates != null)
+                return;
+            rebuildUpdates = new ArrayList<>();
+        }
+        var newIndex = new SuggestionIndex();
+        var complete = false;
+        try {
+            var afterId = 0L;
+            while (true) {
+                var lastId = afterId;
+                List<Suggestion> batch = transactions.execute(status ->
+                        toSuggestions(repositories.findExtensionsForIndexing(lastId, REBUILD_BATCH_SIZE).toList()));
+                if (batch.isEmpty())
+                    break;
+                batch.forEach(newIndex::put);
+                afterId = batch.get(batch.size() - 1).id;
+            }
+            complete = true;
+        } finally {
+            synchronized (this) {
+                if (complete) {
+                    rebuildUpdates.forEach(newIndex::put);
+                    index = newIndex;
+                }
+                rebuildUpdates = null;
+            }
+        }
+        logger.debug("Built suggestion index with " + newIndex.size() + " extensions.");
+    }
+
+    /**
+     * Update the suggestions of the given extensions. This must be called within a transaction.
+     */
+    public void update(Collection<Extension> extensions) {
+        var suggestions = toSuggestions(extensions);
+        synchronized (this) {
+            suggestions.forEach(index::put);
+            if (rebuildUpdates != null)
+                rebuildUpdates.addAll(suggestions);
+        }
+    }
+
+    /**
+     * Return the most popular extensions with a name, display name, publisher or tag
+     * starting with the given prefix. Display names also match with each of their words.
+     */
+    public List<Suggestion> suggest(String prefix, int size) {
+        var normalized = normalize(prefix);
+        if (normalized.isEmpty() || size <= 0)
+            return new ArrayList<>();
+        return index.suggest(normalized, size);
+    }
+
+    private List<Suggestion> toSuggestions(Collection<Extension> extensions) {
+        var reviewCounts = repositories.countReviews(extensions);
+        var result = new ArrayList<Suggestion>(extensions.size());
+        for (var extension : extensions) {
+            var latest = extension.getLatest();
+            var suggestion = new Suggestion();
+            suggestion.id = extension.getId();
+            suggestion.name = extension.getName();
+            suggestion.publisher = extension.getPublisher().getName();
+            suggestion.displayName = latest.getDisplayName();
+            suggestion.iconFileName = latest.getIconFileName();
+            var averageRating = extension.getAverageRating();
+            if (averageRating != null)
+                suggestion.popularity = averageRating * reviewCounts.getOrDefault(extension.getId(), 0L);
+            suggestion.terms = getTerms(extension);
+            result.add(suggestion);
+        }
+        return result;
+    }
+
+    private Set<String> getTerms(Extension extension) {
+        var terms = new LinkedHashSet<String>();
+        var latest = extension.getLatest();
+        addTerm(terms, extension.getName());
+        addTerm(terms, extension.getPublisher().getName());
+        addTerm(terms, latest.getDisplayName());
+        if (!Strings.isNullOrEmpty(latest.getDisplayName())) {
+            for (var word : latest.getDisplayName().split("\\s+")) {
+                addTerm(terms, word);
+            }
+        }
+        if (latest.getTags() != null)
+            latest.getTags().forEach(tag -> addTerm(terms, tag));
+        return terms;
+    }
+
+    private void addTerm(Set<String> terms, String value) {
+        var term = normalize(value);
+        if (!term.isEmpty())
+            terms.add(term);
+    }
+
+    private static String normalize(String value) {
+        if (Strings.isNullOrEmpty(value))
+            return "";
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+}
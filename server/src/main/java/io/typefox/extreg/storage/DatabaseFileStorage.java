@@ -0,0 +1,182 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import javax.annotation.PostConstruct;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import io.typefox.extreg.entities.FileResource;
+
+/**
+ * Keeps file contents in a database table, which is useful when several server instances
+ * share the database but no file system. The table is accessed with plain JDBC, so contents
+ * never enter the persistence context. They are read in chunks while they are sent, which
+ * keeps the memory used per download constant.
+ */
+@Component
+@ConditionalOnProperty(name = "OVSX_STORAGE_TYPE", havingValue = "database")
+public class DatabaseFileStorage implements FileStorage {
+
+    // Read contents in chunks of 1 MB
+    static final int CHUNK_SIZE = 1_048_576;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void init() {
+        jdbcTemplate.execute("create table if not exists file_content (hash varchar(64) primary key, content bytea not null)");
+        // Without compression, chunks are read directly from the stored value instead of decompressing all of it.
+        // File contents are mostly zip archives and images, which would hardly shrink anyway.
+        jdbcTemplate.execute("alter table file_content alter column content set storage external");
+    }
+
+    @Override
+    public void store(FileResource resource, InputStream content) {
+        try {
+            var tempFile = Files.createTempFile("content_", ".tmp");
+            try {
+                var hashingStream = new HashingInputStream(Hashing.sha256(), content);
+                var size = Files.copy(hashingStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                resource.setHash(hashingStream.hash().toString());
+                resource.setSize(size);
+                store(resource, tempFile);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+    @Override
+    public void store(FileResource resource, Path file) {
+        var count = jdbcTemplate.queryForObject("select count(*) from file_content where hash = ?", Long.class, resource.getHash());
+        if (count > 0)
+            return;
+        try (var in = Files.newInputStream(file)) {
+            jdbcTemplate.update("insert into file_content (hash, content) values (?, ?) on conflict do nothing", ps -> {
+                ps.setString(1, resource.getHash());
+                ps.setBinaryStream(2, in, resource.getSize());
+            });
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+    @Override
+    public Resource load(FileResource resource) {
+        return new ContentResource(resource.getHash(), resource.getSize());
+    }
+
+    private class ContentResource extends AbstractResource {
+
+        private final String hash;
+        private final long size;
+
+        ContentResource(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Stored content " + hash;
+        }
+
+        @Override
+        public long contentLength() {
+            return size;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ContentInputStream(hash, size);
+        }
+
+    }
+
+    private class ContentInputStream extends InputStream {
+
+        private final String hash;
+        private final long size;
+        private long position;
+        private long chunkStart;
+        private byte[] chunk;
+
+        ContentInputStream(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+
+        @Override
+        public int read() {
+            if (!fetchChunk())
+                return -1;
+            var b = chunk[(int) (position - chunkStart)];
+            position++;
+            return b & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!fetchChunk())
+                return -1;
+            var index = (int) (position - chunkStart);
+            var count = Math.min(len, chunk.length - index);
+            System.arraycopy(chunk, index, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            // Skipped chunks are never fetched, which is used to serve byte ranges
+            var skipped = Math.max(0, Math.min(n, size - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            if (chunk == null || position < chunkStart || position >= chunkStart + chunk.length)
+                return 0;
+            return (int) (chunkStart + chunk.length - position);
+        }
+
+        private boolean fetchChunk() {
+            if (position >= size)
+                return false;
+            if (chunk != null && position >= chunkStart && position < chunkStart + chunk.length)
+                return true;
+            chunk = jdbcTemplate.queryForObject("select substring(content from ? for ?) from file_content where hash = ?",
+                    byte[].class, (int) position + 1, CHUNK_SIZE, hash);
+            chunkStart = position;
+            return chunk != null && chunk.length > 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,264 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.typefox.extreg.FileContent;
+
+/**
+ * Keeps the contents of small, frequently requested files such as icons and readmes
+ * in direct buffers, so serving them needs neither the database nor the file storage.
+ * The cache is bounded by the total number of bytes it holds. Invalidations only reach
+ * the cache of the instance that performed the change, so entries also expire after a
+ * time that should not exceed the max-age of latest files (10 minutes).
+ */
+@Component
+public class FileCacheService {
+
+    // Remember this many recently requested files to decide which ones to admit
+    private static final int DOORKEEPER_SIZE = 10_000;
+
+    @Value("#{environment.OVSX_FILE_CACHE_SIZE ?: 67108864}")
+    long maxCacheSize;
+
+    @Value("#{environment.OVSX_FILE_CACHE_MAX_FILE_SIZE ?: 262144}")
+    long maxFileSize;
+
+    @Value("#{environment.OVSX_FILE_CACHE_EXPIRY_SECONDS ?: 600}")
+    long expirySeconds;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private Cache<String, FileContent> cache;
+    private Cache<String, Boolean> doorkeeper;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxCacheSize)
+                .expireAfterWrite(expirySeconds, TimeUnit.SECONDS)
+                .weigher((String key, FileContent file) -> {
+                    var length = getTotalLength(file);
+                    cachedBytes.addAndGet(length);
+                    return (int) Math.min(length, Integer.MAX_VALUE);
+                })
+                .removalListener((RemovalNotification<String, FileContent> notification) ->
+                        cachedBytes.addAndGet(-getTotalLength(notification.getValue())))
+                .recordStats()
+                .build();
+        doorkeeper = CacheBuilder.newBuilder()
+                .maximumSize(DOORKEEPER_SIZE)
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "files");
+        Gauge.builder("files.cache.bytes", this, FileCacheService::getCachedBytes)
+                .description("The number of bytes held by the file cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Return the cached file with the given coordinates, or load it with the given supplier.
+     * A loaded file is admitted to the cache when it is small enough and it has been requested
+     * before, so files that are requested only once do not displace frequently requested ones.
+     */
+    public FileContent get(String publisherName, String extensionName, @Nullable String version, String fileName,
+            Supplier<FileContent> loader) {
+        var key = getKey(publisherName, extensionName, version, fileName);
+        var cached = cache.getIfPresent(key);
+        if (cached != null)
+            return cached;
+        var loadGeneration = generation.get();
+        var file = loader.get();
+        if (!isAdmissible(file) || doorkeeper.asMap().putIfAbsent(key, Boolean.TRUE) == null)
+            return file;
+        try {
+            cached = toCached(file);
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+        // Do not cache the file if an invalidation happened while it was loaded
+        if (generation.get() == loadGeneration) {
+            cache.put(key, cached);
+            // An invalidation may also have run between the check and the put
+            if (generation.get() != loadGeneration)
+                cache.asMap().remove(key, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Remove all cached files of the given extension. If a transaction is active, this is
+     * done after it has been committed, so the previous state cannot be cached again.
+     */
+    public void invalidate(String publisherName, String extensionName) {
+        var prefix = publisherName + "/" + extensionName + "/";
+        Runnable invalidation = () -> {
+            generation.incrementAndGet();
+            cache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        } else {
+            invalidation.run();
+        }
+    }
+
+    private String getKey(String publisherName, String extensionName, String version, String fileName) {
+        return String.join("/", publisherName, extensionName, version == null ? "" : version, fileName);
+    }
+
+    private boolean isAdmissible(FileContent file) {
+        if (file.getResource().isOpen())
+            return false;
+        var length = getTotalLength(file);
+        return length >= 0 && length <= maxFileSize;
+    }
+
+    private long getTotalLength(FileContent file) {
+        var length = file.getContentLength();
+        if (length < 0)
+            return -1;
+        for (var encoding : file.getEncodings()) {
+            var encodingLength = getTotalLength(encoding);
+            if (encodingLength < 0)
+                return -1;
+            length += encodingLength;
+        }
+        for (var rendition : file.getRenditions().values()) {
+            var renditionLength = getTotalLength(rendition);
+            if (renditionLength < 0)
+                return -1;
+            length += renditionLength;
+        }
+        return length;
+    }
+
+    private double getCachedBytes() {
+        return cachedBytes.get();
+    }
+
+    private FileContent toCached(FileContent file) throws IOException {
+        byte[] bytes;
+        try (var stream = file.getResource().getInputStream()) {
+            bytes = stream.readAllBytes();
+        }
+        var buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        var cached = new FileContent(new BufferResource(buffer, file.getResource().getDescription()),
+                bytes.length, file.getContentType());
+        cached.setContentEncoding(file.getContentEncoding());
+        cached.setETag(file.getETag());
+        cached.setLastModified(file.getLastModified());
+        for (var encoding : file.getEncodings()) {
+            cached.addEncoding(toCached(encoding));
+        }
+        for (var entry : file.getRenditions().entrySet()) {
+            cached.addRendition(entry.getKey(), toCached(entry.getValue()));
+        }
+        return cached;
+    }
+
+    private static class BufferResource extends AbstractResource {
+
+        private final ByteBuffer buffer;
+        private final String description;
+
+        BufferResource(ByteBuffer buffer, String description) {
+            this.buffer = buffer;
+            this.description = description;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Cached " + description;
+        }
+
+        @Override
+        public long contentLength() {
+            return buffer.limit();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            // Each stream reads from its own view of the shared buffer
+            return new BufferInputStream(buffer.duplicate());
+        }
+
+    }
+
+    private static class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (!buffer.hasRemaining())
+                return -1;
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            var count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            var skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+    }
+
+}
@@ -0,0 +1,51 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.storage;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import org.springframework.core.io.Resource;
+
+import io.typefox.extreg.entities.FileResource;
+
+/**
+ * Storage for the content of published files. Contents are addressed by their
+ * SHA-256 hash, so identical files are stored only once. The implementation is
+ * selected with the {@code OVSX_STORAGE_TYPE} environment variable: {@code local}
+ * (the default) or {@code database}.
+ * <p>
+ * Contents are never deleted. Files of a package are stored before the package is persisted,
+ * and if persisting fails, its contents remain in the storage without being referenced. They
+ * are not deleted automatically, because without reference counts a content that is about to
+ * be referenced by a concurrent publish of an identical file cannot be told apart. Publishing
+ * rejects already published versions before storing any files, which leaves rolled back
+ * transactions as the main source of such contents; their hashes are logged.
+ * </p>
+ */
+public interface FileStorage {
+
+    /**
+     * Store the given content and record its hash and size in the file resource.
+     * The stream is read to its end, but not closed.
+     */
+    void store(FileResource resource, InputStream content);
+
+    /**
+     * Store the content of the given file. The hash and size must already be
+     * recorded in the file resource. The file is left in place.
+     */
+    void store(FileResource resource, Path file);
+
+    /**
+     * Provide the content of the given file resource. The returned resource
+     * is opened only when its content is read.
+     */
+    Resource load(FileResource resource);
+
+}
@@ -0,0 +1,194 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.storage;
+
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import javax.imageio.ImageIO;
+import javax.persistence.EntityManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import io.typefox.extreg.entities.FileResource;
+import io.typefox.extreg.entities.FileVariant;
+import io.typefox.extreg.repositories.RepositoryService;
+
+/**
+ * Creates variants of published files, so they need not be computed on each request.
+ */
+@Component
+public class FileVariantService {
+
+    public static final String GZIP = "gzip";
+    public static final String ICON_RENDITION_PREFIX = "icon-";
+
+    private static final int[] ICON_SIZES = { 32, 64, 128 };
+    // Do not decode images with more than 16 megapixels
+    private static final long MAX_ICON_PIXELS = 4096 * 4096;
+
+    Logger logger = LoggerFactory.getLogger(FileVariantService.class);
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    RepositoryService repositories;
+
+    @Autowired
+    FileStorage storage;
+
+    /**
+     * Store a gzip compressed variant of the given file unless one exists already.
+     * Nothing is stored if compression does not make the file smaller. The returned
+     * variant must be persisted with {@link #persist(Collection)}.
+     */
+    public FileVariant storeGzipVariant(FileResource resource) {
+        if (repositories.findFileVariant(resource.getHash(), GZIP) != null)
+            return null;
+        var compressed = new ByteArrayOutputStream();
+        try (
+            var in = storage.load(resource).getInputStream();
+            // The variant is compressed only once, so use the best compression level
+            var out = new GZIPOutputStream(compressed) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}
+        ) {
+            in.transferTo(out);
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+        if (compressed.size() >= resource.getSize())
+            return null;
+        var variant = new FileVariant();
+        variant.setSourceHash(resource.getHash());
+        variant.setVariant(GZIP);
+        variant.setContentType(resource.getContentType());
+        storage.store(variant, new ByteArrayInputStream(compressed.toByteArray()));
+        return variant;
+    }
+
+    /**
+     * Store downscaled PNG renditions of the given icon for all sizes that are smaller
+     * than the original image. Icons in formats that cannot be decoded, such as SVG,
+     * are left as they are. The returned variants must be persisted with {@link #persist(Collection)}.
+     */
+    public List<FileVariant> storeIconRenditions(FileResource icon) {
+        var result = new ArrayList<FileVariant>();
+        BufferedImage image = null;
+        for (var size : ICON_SIZES) {
+            var variantName = ICON_RENDITION_PREFIX + size;
+            if (repositories.findFileVariant(icon.getHash(), variantName) != null)
+                continue;
+            if (image == null) {
+                image = readImage(icon);
+                if (image == null)
+                    return result;
+            }
+            if (image.getWidth() <= size && image.getHeight() <= size)
+                continue;
+            var bytes = scaleToPng(image, size);
+            if (bytes.length >= icon.getSize())
+                continue;
+            var variant = new FileVariant();
+            variant.setSourceHash(icon.getHash());
+            variant.setVariant(variantName);
+            variant.setContentType(MediaType.IMAGE_PNG_VALUE);
+            storage.store(variant, new ByteArrayInputStream(bytes));
+            result.add(variant);
+        }
+        return result;
+    }
+
+    /**
+     * Persist variants that have been stored in advance. A variant is skipped if an equal
+     * one has been persisted in the meantime, e.g. for another package with the same file.
+     */
+    public void persist(Collection<FileVariant> variants) {
+        for (var variant : variants) {
+            if (repositories.findFileVariant(variant.getSourceHash(), variant.getVariant()) == null)
+                entityManager.persist(variant);
+        }
+    }
+
+    /**
+     * Return the size of an icon rendition, or -1 if the variant is not an icon rendition.
+     */
+    public static int getIconRenditionSize(FileVariant variant) {
+        var name = variant.getVariant();
+        if (!name.startsWith(ICON_RENDITION_PREFIX))
+            return -1;
+        try {
+            return Integer.parseInt(name.substring(ICON_RENDITION_PREFIX.length()));
+        } catch (NumberFormatException exc) {
+            return -1;
+        }
+    }
+
+    private BufferedImage readImage(FileResource icon) {
+        try (
+            var stream = storage.load(icon).getInputStream();
+            var imageStream = ImageIO.createImageInputStream(stream)
+        ) {
+            var readers = ImageIO.getImageReaders(imageStream);
+            if (!readers.hasNext())
+                return null;
+            var reader = readers.next();
+            try {
+                reader.setInput(imageStream);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_ICON_PIXELS)
+                    return null;
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | IllegalArgumentException exc) {
+            logger.warn("Could not read icon " + icon.getHash() + ": " + exc.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] scaleToPng(BufferedImage image, int size) {
+        var scale = (double) size / Math.max(image.getWidth(), image.getHeight());
+        var targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        var targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        var width = image.getWidth();
+        var height = image.getHeight();
+        var current = image;
+        // Bilinear interpolation loses detail when shrinking by more than half,
+        // so approach the target size in steps that halve the image
+        do {
+            width = Math.max(width / 2, targetWidth);
+            height = Math.max(height / 2, targetHeight);
+            var scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            var graphics = scaled.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(current, 0, 0, width, height, null);
+            graphics.dispose();
+            current = scaled;
+        } while (width > targetWidth || height > targetHeight);
+        try {
+            var out = new ByteArrayOutputStream();
+            ImageIO.write(current, "png", out);
+            return out.toByteArray();
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.typefox.extreg.FileContent;
+import io.typefox.extreg.entities.FileResource;
+
+/**
+ * Moves file contents that were published before the file storage existed from the
+ * {@code content} columns of the binary, readme and icon tables to the {@link FileStorage}.
+ * Rows are processed in keyset batches: each content is streamed into the storage on its own,
+ * and the hash, size and media type of a batch are recorded in one short transaction. Migrated
+ * rows have their content cleared, so an interrupted migration continues where it stopped.
+ * The columns are dropped when they are empty.
+ */
+@Component
+public class LegacyContentMigration {
+
+    private static final int BATCH_SIZE = 100;
+
+    Logger logger = LoggerFactory.getLogger(LegacyContentMigration.class);
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactions;
+
+    @Autowired
+    FileStorage storage;
+
+    @EventListener
+    public void migrateLegacyContent(ApplicationStartedEvent event) {
+        try {
+            migrate("extension_binary", null);
+            migrate("extension_readme", "readme_file_name");
+            migrate("extension_icon", "icon_file_name");
+        } catch (DataAccessException exc) {
+            // E.g. another server instance dropped a column while this one was migrating
+            logger.error("Failed to move legacy file contents, the migration continues on the next start", exc);
+        }
+    }
+
+    /**
+     * Migrate the contents of the given table. The media type is derived from the given
+     * file name column of the extension version, or is a generic binary type if there is none.
+     */
+    private void migrate(String table, String fileNameColumn) {
+        if (!hasContentColumn(table))
+            return;
+        logger.info("Moving the file contents of " + table + " to the file storage...");
+        var query = "select t.id, " + (fileNameColumn != null ? "v." + fileNameColumn : "null")
+                + " from " + table + " t left join extension_version v on v.id = t.extension_id"
+                + " where t.content is not null and t.id > ? order by t.id limit ?";
+        var afterId = 0L;
+        var count = 0;
+        while (true) {
+            var batch = jdbcTemplate.query(query, (rs, rowNum) -> {
+                var file = new LegacyFile();
+                file.id = rs.getLong(1);
+                var fileName = rs.getString(2);
+                file.contentType = fileName != null
+                        ? FileContent.guessContentType(fileName).toString()
+                        : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+                return file;
+            }, afterId, BATCH_SIZE);
+            if (batch.isEmpty())
+                break;
+            for (var file : batch) {
+                storeContent(table, file);
+            }
+            transactions.execute(status -> {
+                for (var file : batch) {
+                    jdbcTemplate.update("update " + table + " set hash = ?, size = ?, content_type = ?, content = null where id = ?",
+                            file.hash, file.size, file.contentType, file.id);
+                }
+                return null;
+            });
+            count += batch.size();
+            afterId = batch.get(batch.size() - 1).id;
+        }
+        // The column is dropped only when all contents have been moved
+        jdbcTemplate.execute("alter table " + table + " drop column content");
+        logger.info("Moved " + count + " file contents of " + table + " to the file storage.");
+    }
+
+    private boolean hasContentColumn(String table) {
+        var count = jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.columns where table_name = ? and column_name = 'content'",
+                Long.class, table);
+        return count != null && count > 0;
+    }
+
+    private void storeContent(String table, LegacyFile file) {
+        // Only one content is read at a time, and it is never loaded into the persistence context
+        jdbcTemplate.query("select content from " + table + " where id = ?", (RowCallbackHandler) rs -> {
+            try (var stream = rs.getBinaryStream(1)) {
+                storage.store(file, stream);
+            } catch (IOException exc) {
+                throw new RuntimeException(exc);
+            }
+        }, file.id);
+    }
+
+    private static class LegacyFile implements FileResource {
+
+        long id;
+        String hash;
+        Long size;
+        String contentType;
+
+        @Override
+        public String getHash() {
+            return hash;
+        }
+
+        @Override
+        public void setHash(String hash) {
+            this.hash = hash;
+        }
+
+        @Override
+        public Long getSize() {
+            return size;
+        }
+
+        @Override
+        public void setSize(Long size) {
+            this.size = size;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public void setContentType(String contentType) {
+            this.contentType = contentType;
+        }
+
+    }
+
+}
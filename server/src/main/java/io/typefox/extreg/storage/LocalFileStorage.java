@@ -0,0 +1,112 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.storage;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import javax.annotation.PostConstruct;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import io.typefox.extreg.entities.FileResource;
+
+/**
+ * Keeps file contents in a local directory. Each content is written to a file
+ * named after its hash, in a subdirectory named after the first two hash digits.
+ */
+@Component
+@ConditionalOnProperty(name = "OVSX_STORAGE_TYPE", havingValue = "local", matchIfMissing = true)
+public class LocalFileStorage implements FileStorage {
+
+    @Value("#{environment.OVSX_STORAGE_PATH}")
+    String storagePath;
+
+    private Path rootPath;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (Strings.isNullOrEmpty(storagePath))
+            rootPath = Paths.get(System.getProperty("user.home"), ".ovsx", "storage");
+        else
+            rootPath = Paths.get(storagePath);
+        Files.createDirectories(rootPath);
+    }
+
+    @Override
+    public void store(FileResource resource, InputStream content) {
+        try {
+            // Write to the storage directory first so the final move is atomic
+            var tempFile = Files.createTempFile(rootPath, "upload_", ".tmp");
+            try {
+                var hashingStream = new HashingInputStream(Hashing.sha256(), content);
+                var size = Files.copy(hashingStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                var hash = hashingStream.hash().toString();
+                var path = getPath(hash);
+                if (!Files.exists(path)) {
+                    Files.createDirectories(path.getParent());
+                    Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE);
+                }
+                resource.setHash(hash);
+                resource.setSize(size);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+    @Override
+    public void store(FileResource resource, Path file) {
+        var path = getPath(resource.getHash());
+        if (Files.exists(path))
+            return;
+        try {
+            var tempFile = Files.createTempFile(rootPath, "upload_", ".tmp");
+            try {
+                Files.copy(file, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                Files.createDirectories(path.getParent());
+                Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+    @Override
+    public Resource load(FileResource resource) {
+        return new FileSystemResource(getPath(resource.getHash())) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                // FileInputStream implements skip by seeking, which is used to serve byte ranges
+                return new FileInputStream(getFile());
+            }
+        };
+    }
+
+    private Path getPath(String hash) {
+        return rootPath.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+}
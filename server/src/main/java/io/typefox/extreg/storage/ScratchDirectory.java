@@ -0,0 +1,84 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+/**
+ * A temporary directory for processing a single upload. Files written with
+ * {@link #write(String, InputStream)} count against the scratch space quota.
+ * Closing the directory deletes it with all its content.
+ */
+public class ScratchDirectory implements AutoCloseable {
+
+    private static final int CHUNK_SIZE = 65_536;
+
+    private final Path path;
+    private final ScratchSpaceService scratchSpace;
+    private long writtenBytes;
+    // Quota is reserved in whole chunks ahead of writing
+    private long reservedBytes;
+
+    ScratchDirectory(Path path, ScratchSpaceService scratchSpace) {
+        this.path = path;
+        this.scratchSpace = scratchSpace;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Write the given content to a new file in this directory. The stream is read
+     * to its end, but not closed.
+     */
+    public Path write(String fileName, InputStream content) throws IOException {
+        var file = path.resolve(fileName);
+        try (var out = Files.newOutputStream(file)) {
+            var buffer = new byte[CHUNK_SIZE];
+            int count;
+            while ((count = content.read(buffer)) >= 0) {
+                if (writtenBytes + count > reservedBytes) {
+                    scratchSpace.acquire(CHUNK_SIZE);
+                    reservedBytes += CHUNK_SIZE;
+                }
+                out.write(buffer, 0, count);
+                writtenBytes += count;
+            }
+        }
+        return file;
+    }
+
+    @Override
+    public void close() {
+        try {
+            deleteRecursively(path);
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        } finally {
+            scratchSpace.release(reservedBytes);
+            reservedBytes = 0;
+        }
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory))
+            return;
+        try (var stream = Files.walk(directory)) {
+            var paths = stream.sorted(Comparator.reverseOrder()).toArray(Path[]::new);
+            for (var p : paths) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import com.google.common.base.Strings;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Manages the temporary files that are written while uploads are processed. Each upload
+ * gets its own directory, which is deleted with all its content when the upload is done.
+ * The total size of all scratch files is limited by a quota; uploads wait for space to be
+ * released for a while and are rejected if there is still not enough.
+ * <p>
+ * The scratch path ({@code OVSX_SCRATCH_PATH}) can point to a tmpfs mount to keep scratch
+ * files in memory. It must be dedicated to this server, because leftover upload directories
+ * are deleted on startup.
+ * </p>
+ */
+@Component
+public class ScratchSpaceService {
+
+    private static final String DIRECTORY_PREFIX = "upload_";
+    private static final long QUOTA_TIMEOUT_SECONDS = 30;
+
+    Logger logger = LoggerFactory.getLogger(ScratchSpaceService.class);
+
+    @Value("#{environment.OVSX_SCRATCH_PATH}")
+    String scratchPath;
+
+    // 2 GB by default
+    @Value("#{environment.OVSX_SCRATCH_QUOTA ?: 2147483648}")
+    long quotaBytes;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private Path rootPath;
+    // One permit per kilobyte, so quotas larger than 2 GB can be represented
+    private Semaphore quota;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (Strings.isNullOrEmpty(scratchPath))
+            rootPath = Paths.get(System.getProperty("java.io.tmpdir"), "ovsx-scratch");
+        else
+            rootPath = Paths.get(scratchPath);
+        Files.createDirectories(rootPath);
+        deleteLeftovers();
+        quota = new Semaphore(toPermits(quotaBytes));
+        Gauge.builder("scratch.space.free", rootPath, path -> path.toFile().getUsableSpace())
+                .description("The usable space in bytes on the file system of the scratch directory")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("scratch.space.quota.available", quota, permits -> permits.availablePermits() * 1024.0)
+                .description("The number of bytes that can still be written to scratch files")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    private void deleteLeftovers() throws IOException {
+        try (var stream = Files.newDirectoryStream(rootPath, DIRECTORY_PREFIX + "*")) {
+            for (var directory : stream) {
+                logger.info("Deleting leftover scratch directory " + directory);
+                ScratchDirectory.deleteRecursively(directory);
+            }
+        }
+    }
+
+    /**
+     * Create a new scratch directory. It must be closed to delete it and to release its quota.
+     */
+    public ScratchDirectory createDirectory() {
+        try {
+            return new ScratchDirectory(Files.createTempDirectory(rootPath, DIRECTORY_PREFIX), this);
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+
+    void acquire(long bytes) {
+        var permits = toPermits(bytes);
+        try {
+            if (!quota.tryAcquire(permits, QUOTA_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Not enough scratch space to process the upload.");
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for scratch space.");
+        }
+    }
+
+    void release(long bytes) {
+        quota.release(toPermits(bytes));
+    }
+
+    private static int toPermits(long bytes) {
+        return (int) Math.min((bytes + 1023) / 1024, Integer.MAX_VALUE);
+    }
+
+}
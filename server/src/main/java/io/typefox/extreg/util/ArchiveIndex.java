@@ -0,0 +1,51 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.util;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An index of the entries of a zip file. Entry names are looked up case-insensitively,
+ * and backslashes are treated like forward slashes. The central directory is read only
+ * once when the index is created; entry contents are read when they are requested.
+ */
+public class ArchiveIndex {
+
+    private final ZipFile archive;
+    private final Map<String, ZipEntry> entries = new HashMap<>();
+
+    public ArchiveIndex(ZipFile archive) {
+        this.archive = archive;
+        var enumeration = archive.entries();
+        while (enumeration.hasMoreElements()) {
+            var entry = enumeration.nextElement();
+            // Keep the first entry if names differ only in case
+            entries.putIfAbsent(normalize(entry.getName()), entry);
+        }
+    }
+
+    public static String normalize(String entryName) {
+        return entryName.replace('\\', '/').toLowerCase(Locale.ROOT);
+    }
+
+    public ZipEntry getEntry(String entryName) {
+        return entries.get(normalize(entryName));
+    }
+
+    public byte[] readEntry(String entryName) {
+        var entry = getEntry(entryName);
+        if (entry == null)
+            return null;
+        return ArchiveUtil.readEntry(archive, entry);
+    }
+
+}
@@ -9,6 +9,10 @@ package io.typefox.extreg.util;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -24,12 +28,16 @@ public final class ArchiveUtil {
     private ArchiveUtil() {}
 
     public static byte[] readEntry(ZipFile archive, String entryName) {
+        var entry = archive.getEntry(entryName);
+        if (entry == null)
+            return null;
+        return readEntry(archive, entry);
+    }
+
+    public static byte[] readEntry(ZipFile archive, ZipEntry entry) {
         try {
-            var entry = archive.getEntry(entryName);
-            if (entry == null)
-                return null;
             if (entry.getSize() > MAX_ENTRY_SIZE)
-                throw new ErrorResultException("The file " + entryName + " exceeds the size limit of 32 MB.");
+                throw new ErrorResultException("The file " + entry.getName() + " exceeds the size limit of 32 MB.");
             return ByteStreams.toByteArray(archive.getInputStream(entry));
         } catch (ZipException exc) {
             throw new ErrorResultException("Could not read zip file: " + exc.getMessage(), exc);
@@ -39,17 +47,31 @@ public final class ArchiveUtil {
     }
 
     public static byte[] readEntry(byte[] archive, String entryName) {
+        return readEntries(archive, Collections.singleton(entryName)).get(entryName);
+    }
+
+    /**
+     * Read multiple entries in a single pass over the archive. Entry names are matched
+     * like in {@link ArchiveIndex}. The result maps the given entry names to the
+     * content of the entries that were found.
+     */
+    public static Map<String, byte[]> readEntries(byte[] archive, Collection<String> entryNames) {
+        var remaining = new HashMap<String, String>();
+        for (var entryName : entryNames) {
+            remaining.put(ArchiveIndex.normalize(entryName), entryName);
+        }
+        var result = new HashMap<String, byte[]>();
         try (var zipStream = new ZipInputStream(new ByteArrayInputStream(archive))) {
             ZipEntry entry;
-            while ((entry = zipStream.getNextEntry()) != null) {
-                String name = entry.getName().replace('\\', '/');
-                if (name.equalsIgnoreCase(entryName)) {
+            while (!remaining.isEmpty() && (entry = zipStream.getNextEntry()) != null) {
+                var entryName = remaining.remove(ArchiveIndex.normalize(entry.getName()));
+                if (entryName != null) {
                     if (entry.getSize() > MAX_ENTRY_SIZE)
                         throw new ErrorResultException("The file " + entryName + " exceeds the size limit of 32 MB.");
-                    return ByteStreams.toByteArray(zipStream);
+                    result.put(entryName, ByteStreams.toByteArray(zipStream));
                 }
             }
-            return null;
+            return result;
         } catch (ZipException exc) {
             throw new ErrorResultException("Could not read zip file: " + exc.getMessage(), exc);
         } catch (IOException exc) {
@@ -54,22 +54,87 @@ public class SemanticVersion implements Comparable<SemanticVersion> {
         for (int i = 0; i < minSize; i++) {
             String left = this.parts.get(i);
             String right = other.parts.get(i);
-            boolean leftIsNumber = !left.isEmpty() && Character.isDigit(left.charAt(0));
-            boolean rightIsNumber = !right.isEmpty() && Character.isDigit(right.charAt(0));
-            if (!leftIsNumber && !rightIsNumber)
-                // Regard versions as equal in terms of sorting if they differ only in their suffix
-                return 0;
+            boolean leftIsNumber = isNumber(left);
+            boolean rightIsNumber = isNumber(right);
             int compare;
             if (leftIsNumber && rightIsNumber)
-                compare = Integer.compare(Integer.parseInt(left), Integer.parseInt(right));
+                compare = compareNumbers(left, right);
             else
-                compare = left.compareTo(right);
+                compare = Integer.compare(getRank(left), getRank(right));
             if (compare != 0)
                 return compare;
+            if (!leftIsNumber)
+                // Regard versions as equal in terms of sorting if they differ only in their suffix
+                return 0;
         }
 		return -Integer.compare(this.parts.size(), other.parts.size());
 	}
 
+    private static boolean isNumber(String part) {
+        return !part.isEmpty() && Character.isDigit(part.charAt(0));
+    }
+
+    /**
+     * Numbers sort between suffixes that sort before digits, such as {@code -beta},
+     * and suffixes that sort after digits, such as {@code beta}.
+     */
+    private static int getRank(String part) {
+        if (isNumber(part))
+            return 1;
+        return part.isEmpty() || part.charAt(0) < '0' ? 0 : 2;
+    }
+
+    private static int compareNumbers(String left, String right) {
+        // Numbers can have any length, so compare them by their digits
+        left = stripLeadingZeros(left);
+        right = stripLeadingZeros(right);
+        if (left.length() != right.length())
+            return Integer.compare(left.length(), right.length());
+        return Integer.signum(left.compareTo(right));
+    }
+
+    private static String stripLeadingZeros(String number) {
+        return number.replaceFirst("^0+(?=.)", "");
+    }
+
+    /**
+     * Return a key that sorts like this version when compared as a string. The key
+     * consists only of digits, so it is sorted the same way with any collation.
+     * Each numeric part is encoded as {@code 5} followed by the number padded to ten
+     * digits. Longer numbers are encoded as {@code 6} followed by their length padded
+     * to ten digits and the number itself. The first non-numeric part ends the comparison,
+     * so it is reduced to {@code 3} or {@code 7} depending on whether it sorts before or
+     * after digits. The key ends with {@code 9}, so shorter versions sort after longer
+     * ones with the same prefix.
+     */
+    public String getSortKey() {
+        var key = new StringBuilder();
+        for (var part : parts) {
+            if (isNumber(part)) {
+                var number = stripLeadingZeros(part);
+                if (number.length() <= 10) {
+                    key.append('5');
+                    appendPadded(key, number);
+                } else {
+                    key.append('6');
+                    appendPadded(key, Integer.toString(number.length()));
+                    key.append(number);
+                }
+            } else {
+                key.append(getRank(part) == 0 ? '3' : '7');
+                break;
+            }
+        }
+        return key.append('9').toString();
+    }
+
+    private static void appendPadded(StringBuilder key, String number) {
+        for (int i = number.length(); i < 10; i++) {
+            key.append('0');
+        }
+        key.append(number);
+    }
+
     @Override
     public String toString() {
         return original;
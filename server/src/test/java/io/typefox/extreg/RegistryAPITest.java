@@ -0,0 +1,211 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RegistryAPITest {
+
+    private static final long LAST_MODIFIED = 1_577_836_800_000L;
+
+    private MockHttpServletResponse servletResponse;
+
+    @Test
+    public void testSelectEncoding() throws IOException {
+        var response = getFile(createFile(), headers(HttpHeaders.ACCEPT_ENCODING, "br, GZIP"));
+        assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("\"gzip\"", getETag());
+        assertEquals(Arrays.asList(HttpHeaders.ACCEPT_ENCODING), response.getHeaders().getVary());
+        assertEquals("compressed", read(response));
+
+        response = getFile(createFile(), headers(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0.5"));
+        assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    public void testIdentityEncoding() throws IOException {
+        var response = getFile(createFile(), new HttpHeaders());
+        assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("\"identity\"", getETag());
+        // The response depends on the header even if it was not sent
+        assertEquals(Arrays.asList(HttpHeaders.ACCEPT_ENCODING), response.getHeaders().getVary());
+        assertEquals("plain", read(response));
+    }
+
+    @Test
+    public void testRejectedEncoding() throws IOException {
+        for (var value : Arrays.asList("gzip;q=0", "gzip; q=0.000", "gzip;q=abc", "gzip;q=")) {
+            var response = getFile(createFile(), headers(HttpHeaders.ACCEPT_ENCODING, value));
+            assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), value);
+            assertEquals("\"identity\"", getETag(), value);
+        }
+    }
+
+    @Test
+    public void testIfRangeStrongValidator() throws IOException {
+        var requestHeaders = headers(HttpHeaders.RANGE, "bytes=0-1");
+        requestHeaders.set(HttpHeaders.IF_RANGE, "\"identity\"");
+        assertTrue(isRangeApplied(getFile(createFile(), requestHeaders)));
+
+        requestHeaders.set(HttpHeaders.IF_RANGE, "\"outdated\"");
+        assertFalse(isRangeApplied(getFile(createFile(), requestHeaders)));
+    }
+
+    @Test
+    public void testIfRangeWeakValidator() throws IOException {
+        var requestHeaders = headers(HttpHeaders.RANGE, "bytes=0-1");
+        requestHeaders.set(HttpHeaders.IF_RANGE, "W/\"identity\"");
+        assertFalse(isRangeApplied(getFile(createFile(), requestHeaders)));
+    }
+
+    @Test
+    public void testIfRangeDate() throws IOException {
+        var requestHeaders = headers(HttpHeaders.RANGE, "bytes=0-1");
+        requestHeaders.setDate(HttpHeaders.IF_RANGE, LAST_MODIFIED);
+        assertTrue(isRangeApplied(getFile(createFile(), requestHeaders)));
+
+        requestHeaders.setDate(HttpHeaders.IF_RANGE, LAST_MODIFIED - 60_000);
+        assertFalse(isRangeApplied(getFile(createFile(), requestHeaders)));
+
+        requestHeaders.set(HttpHeaders.IF_RANGE, "not a date");
+        assertFalse(isRangeApplied(getFile(createFile(), requestHeaders)));
+
+        var file = createFile();
+        file.setLastModified(-1);
+        requestHeaders.setDate(HttpHeaders.IF_RANGE, LAST_MODIFIED);
+        assertFalse(isRangeApplied(getFile(file, requestHeaders)));
+    }
+
+    @Test
+    public void testRangeWithoutIfRange() throws IOException {
+        assertTrue(isRangeApplied(getFile(createFile(), headers(HttpHeaders.RANGE, "bytes=0-1"))));
+    }
+
+    @Test
+    public void testNotModifiedWithoutReading() throws IOException {
+        var resource = new TrackingResource();
+        var file = new FileContent(resource, 5, MediaType.TEXT_PLAIN);
+        file.setETag("\"identity\"");
+        var response = getFile(file, headers(HttpHeaders.IF_NONE_MATCH, "\"identity\""));
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals(0, resource.opened);
+
+        // A stream that is already open is closed without being read
+        var stream = new TrackingInputStream();
+        file = new FileContent(new InputStreamResource(stream), 5, MediaType.TEXT_PLAIN);
+        file.setETag("\"identity\"");
+        response = getFile(file, headers(HttpHeaders.IF_NONE_MATCH, "\"identity\""));
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertTrue(stream.closed);
+        assertFalse(stream.read);
+    }
+
+    private FileContent createFile() {
+        var file = new FileContent(new ByteArrayResource("plain".getBytes(StandardCharsets.UTF_8)), 5, MediaType.TEXT_PLAIN);
+        file.setETag("\"identity\"");
+        file.setLastModified(LAST_MODIFIED);
+        var encoded = new FileContent(new ByteArrayResource("compressed".getBytes(StandardCharsets.UTF_8)), 10, MediaType.TEXT_PLAIN);
+        encoded.setContentEncoding("gzip");
+        encoded.setETag("\"gzip\"");
+        encoded.setLastModified(LAST_MODIFIED);
+        file.addEncoding(encoded);
+        return file;
+    }
+
+    private HttpHeaders headers(String name, String value) {
+        var headers = new HttpHeaders();
+        headers.set(name, value);
+        return headers;
+    }
+
+    private ResponseEntity<Resource> getFile(FileContent file, HttpHeaders requestHeaders) throws IOException {
+        var request = new MockHttpServletRequest("GET", "/api/foo/bar/1.0.0/file/README.md");
+        requestHeaders.forEach((name, values) -> values.forEach(value -> request.addHeader(name, value)));
+        servletResponse = new MockHttpServletResponse();
+        var webRequest = new ServletWebRequest(request, servletResponse);
+        return new RegistryAPI().getFileResponse(file, "README.md", null, "public", requestHeaders, webRequest);
+    }
+
+    /**
+     * The ETag is added to the servlet response when the request is checked for modifications.
+     */
+    private String getETag() {
+        return servletResponse.getHeader(HttpHeaders.ETAG);
+    }
+
+    /**
+     * Whether the range handling of the message converter is left in place.
+     */
+    private boolean isRangeApplied(ResponseEntity<Resource> response) {
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return !"none".equals(response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES))
+                && !(response.getBody() instanceof InputStreamResource);
+    }
+
+    private String read(ResponseEntity<Resource> response) throws IOException {
+        try (var stream = response.getBody().getInputStream()) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class TrackingResource extends AbstractResource {
+
+        int opened;
+
+        @Override
+        public String getDescription() {
+            return "Tracking resource";
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            opened++;
+            return new ByteArrayInputStream("plain".getBytes(StandardCharsets.UTF_8));
+        }
+
+    }
+
+    private static class TrackingInputStream extends InputStream {
+
+        boolean read;
+        boolean closed;
+
+        @Override
+        public int read() {
+            read = true;
+            return -1;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+    }
+
+}
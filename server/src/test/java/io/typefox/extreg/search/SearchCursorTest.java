@@ -0,0 +1,60 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchCursorTest {
+
+    @Test
+    public void testEncodeDecode() {
+        var cursor = SearchCursor.decode(new SearchCursor(1.25f, 42).encode("foo", "Themes"), "foo", "Themes");
+        assertEquals(1.25f, cursor.getScore());
+        assertEquals(42, cursor.getExtensionId());
+
+        cursor = SearchCursor.decode(new SearchCursor(0.0f, Long.MAX_VALUE).encode(null, null), null, null);
+        assertEquals(0.0f, cursor.getScore());
+        assertEquals(Long.MAX_VALUE, cursor.getExtensionId());
+    }
+
+    @Test
+    public void testUrlSafe() {
+        var value = new SearchCursor(3.4028235E38f, 9007199254740993L).encode("a query", null);
+        assertTrue(value.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    public void testBoundToQuery() {
+        var value = new SearchCursor(1.25f, 42).encode("Foo  Bar", null);
+        assertEquals(42, SearchCursor.decode(value, " foo bar", "").getExtensionId());
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(value, "foo", null));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(value, "foo bar", "Themes"));
+    }
+
+    @Test
+    public void testInvalid() {
+        var hash = new String(Base64.getUrlDecoder().decode(new SearchCursor(1, 1).encode(null, null)), StandardCharsets.UTF_8)
+                .split(":")[2];
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("not a cursor!", null, null));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(encode("1.5"), null, null));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(encode("1.5:abc:" + hash), null, null));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(encode("abc:42:" + hash), null, null));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(encode(":"), null, null));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("", null, null));
+    }
+
+    private String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,155 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.util.Streamable;
+
+import io.typefox.extreg.entities.Extension;
+import io.typefox.extreg.entities.SearchIndexUpdate;
+import io.typefox.extreg.repositories.RepositoryService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchIndexDispatcherTest {
+
+    private List<SearchIndexUpdate> updates;
+    private List<Object> removed;
+    private List<Collection<Extension>> indexed;
+    private boolean failing;
+    private SearchIndexDispatcher dispatcher;
+
+    @BeforeEach
+    public void setup() {
+        updates = new ArrayList<>();
+        removed = new ArrayList<>();
+        indexed = new ArrayList<>();
+        dispatcher = new SearchIndexDispatcher() {
+            @Override
+            public void index(Collection<Extension> extensions) {
+                if (failing)
+                    throw new RuntimeException("Search index is not available");
+                indexed.add(extensions);
+            }
+        };
+        dispatcher.repositories = new RepositoryService() {
+            @Override
+            public Streamable<SearchIndexUpdate> findDueSearchIndexUpdates(LocalDateTime now, int limit) {
+                return Streamable.of(updates);
+            }
+
+            @Override
+            public Streamable<Extension> findExtensionsByIds(Collection<Long> ids) {
+                return Streamable.of(ids.stream().map(this::extension).toArray(Extension[]::new));
+            }
+
+            private Extension extension(long id) {
+                var extension = new Extension();
+                extension.setId(id);
+                return extension;
+            }
+        };
+        // Only removing entities is expected from the dispatcher
+        dispatcher.entityManager = (EntityManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { EntityManager.class }, (proxy, method, args) -> {
+                    if (!method.getName().equals("remove"))
+                        throw new UnsupportedOperationException(method.getName());
+                    removed.add(args[0]);
+                    return null;
+                });
+    }
+
+    @Test
+    public void testDispatchOncePerExtension() {
+        updates.addAll(Arrays.asList(update(1, 0), update(2, 0), update(1, 0)));
+        dispatcher.dispatch();
+        assertEquals(1, indexed.size());
+        assertEquals(2, indexed.get(0).size());
+        assertEquals(updates, removed);
+    }
+
+    @Test
+    public void testNothingDue() {
+        dispatcher.dispatch();
+        assertTrue(indexed.isEmpty());
+        assertTrue(removed.isEmpty());
+    }
+
+    @Test
+    public void testRetryWithBackoff() {
+        var first = update(1, 0);
+        var later = update(2, 3);
+        updates.addAll(Arrays.asList(first, later));
+        failing = true;
+        var before = now();
+        dispatcher.dispatch();
+        var after = now();
+
+        assertTrue(removed.isEmpty());
+        assertEquals(1, first.getAttempts());
+        assertDelay(2, before, after, first);
+        assertEquals(4, later.getAttempts());
+        assertDelay(16, before, after, later);
+
+        // The delay doubles with every attempt
+        dispatcher.dispatch();
+        assertEquals(2, first.getAttempts());
+        assertDelay(4, before, now(), first);
+
+        // Once the update succeeds, the entry is removed
+        failing = false;
+        dispatcher.dispatch();
+        assertEquals(updates, removed);
+    }
+
+    @Test
+    public void testMaxRetryDelay() {
+        var update = update(1, 8);
+        updates.add(update);
+        failing = true;
+        var before = now();
+        dispatcher.dispatch();
+        assertDelay(300, before, now(), update);
+
+        // The shift is limited, so the delay does not overflow after many attempts
+        update.setAttempts(100);
+        before = now();
+        dispatcher.dispatch();
+        assertDelay(300, before, now(), update);
+    }
+
+    private SearchIndexUpdate update(long extensionId, int attempts) {
+        var update = new SearchIndexUpdate();
+        update.setExtensionId(extensionId);
+        update.setAttempts(attempts);
+        update.setNextAttempt(now());
+        return update;
+    }
+
+    private LocalDateTime now() {
+        return LocalDateTime.now(ZoneId.of("UTC"));
+    }
+
+    private void assertDelay(long seconds, LocalDateTime before, LocalDateTime after, SearchIndexUpdate update) {
+        var nextAttempt = update.getNextAttempt();
+        assertFalse(nextAttempt.isBefore(before.plusSeconds(seconds)), nextAttempt.toString());
+        assertFalse(nextAttempt.isAfter(after.plusSeconds(seconds)), nextAttempt.toString());
+    }
+
+}
@@ -0,0 +1,90 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SuggestionIndexTest {
+
+    @Test
+    public void testRanking() {
+        var index = new SuggestionIndex();
+        index.put(suggestion(1, "python", 10, "python"));
+        index.put(suggestion(2, "pylint", 30, "pylint"));
+        index.put(suggestion(3, "pytest", 20, "pytest"));
+        index.put(suggestion(4, "pyright", 20, "pyright"));
+        index.put(suggestion(5, "java", 50, "java"));
+
+        assertEquals(Arrays.asList("pylint", "pyright", "pytest", "python"), names(index.suggest("p", 10)));
+        assertEquals(Arrays.asList("pylint", "pyright"), names(index.suggest("py", 2)));
+        assertEquals(Arrays.asList("pytest", "python"), names(index.suggest("pyt", 10)));
+        assertEquals(Arrays.asList("python"), names(index.suggest("pyth", 10)));
+        assertEquals(Arrays.asList("python"), names(index.suggest("pytho", 10)));
+        assertTrue(index.suggest("x", 10).isEmpty());
+        assertTrue(index.suggest("xyzw", 10).isEmpty());
+    }
+
+    @Test
+    public void testLongPrefixRanking() {
+        var index = new SuggestionIndex();
+        index.put(suggestion(1, "gitlens", 10, "gitlens"));
+        index.put(suggestion(2, "git-graph", 40, "git-graph"));
+        index.put(suggestion(3, "git-history", 20, "git-history"));
+
+        assertEquals(Arrays.asList("git-graph", "git-history", "gitlens"), names(index.suggest("git", 10)));
+        assertEquals(Arrays.asList("git-graph", "git-history"), names(index.suggest("git-", 10)));
+        assertEquals(Arrays.asList("git-graph"), names(index.suggest("git-", 1)));
+    }
+
+    @Test
+    public void testDuplicateTerms() {
+        var index = new SuggestionIndex();
+        index.put(suggestion(1, "docker", 10, "docker", "docker tools", "docker", "dockerfile"));
+        index.put(suggestion(2, "compose", 5, "compose", "docker-compose"));
+
+        assertEquals(Arrays.asList("docker", "compose"), names(index.suggest("d", 10)));
+        assertEquals(Arrays.asList("docker", "compose"), names(index.suggest("dock", 10)));
+        assertEquals(Arrays.asList("docker"), names(index.suggest("docker t", 10)));
+    }
+
+    @Test
+    public void testUpdate() {
+        var index = new SuggestionIndex();
+        index.put(suggestion(1, "vetur", 10, "vetur", "vue"));
+        index.put(suggestion(2, "volar", 20, "volar", "vue"));
+        assertEquals(Arrays.asList("volar", "vetur"), names(index.suggest("vue", 10)));
+
+        index.put(suggestion(1, "vetur", 30, "vetur", "vite"));
+        assertEquals(Arrays.asList("vetur", "volar"), names(index.suggest("v", 10)));
+        assertEquals(Arrays.asList("volar"), names(index.suggest("vu", 10)));
+        assertEquals(Arrays.asList("volar"), names(index.suggest("vue", 10)));
+        assertEquals(Arrays.asList("vetur"), names(index.suggest("vite", 10)));
+        assertEquals(2, index.size());
+    }
+
+    static Suggestion suggestion(long id, String name, double popularity, String... terms) {
+        var suggestion = new Suggestion();
+        suggestion.id = id;
+        suggestion.name = name;
+        suggestion.popularity = popularity;
+        suggestion.terms = new LinkedHashSet<>(Arrays.asList(terms));
+        return suggestion;
+    }
+
+    static List<String> names(List<Suggestion> suggestions) {
+        return suggestions.stream().map(s -> s.name).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,98 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.util.Streamable;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.typefox.extreg.entities.Extension;
+import io.typefox.extreg.entities.ExtensionVersion;
+import io.typefox.extreg.entities.Publisher;
+import io.typefox.extreg.repositories.RepositoryService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SuggestionServiceTest {
+
+    @Test
+    public void testUpdateDuringRebuild() {
+        var service = new SuggestionService();
+        var stored = Arrays.asList(extension(1, "vetur", "Vetur"), extension(2, "volar", "Volar"));
+        var updated = extension(1, "vetur", "Vue Tooling");
+        service.repositories = new RepositoryService() {
+            @Override
+            public Streamable<Extension> findExtensionsForIndexing(long afterId, int limit) {
+                if (afterId > 0)
+                    return Streamable.empty();
+                // The extension is updated after the rebuild has read it
+                service.update(Collections.singletonList(updated));
+                return Streamable.of(stored);
+            }
+
+            @Override
+            public Map<Long, Long> countReviews(Collection<Extension> extensions) {
+                return Collections.emptyMap();
+            }
+        };
+        service.transactions = new TransactionTemplate() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                return action.doInTransaction(null);
+            }
+        };
+
+        service.rebuild();
+        assertEquals(Arrays.asList("vetur"), names(service.suggest("Vue T", 10)));
+        assertEquals(Arrays.asList("vetur", "volar"), names(service.suggest("v", 10)));
+        assertTrue(service.suggest("Vetur", 10).stream().allMatch(s -> "Vue Tooling".equals(s.displayName)));
+    }
+
+    @Test
+    public void testNormalizePrefix() {
+        var service = new SuggestionService();
+        service.repositories = new RepositoryService() {
+            @Override
+            public Map<Long, Long> countReviews(Collection<Extension> extensions) {
+                return Collections.emptyMap();
+            }
+        };
+        service.update(Collections.singletonList(extension(1, "gitlens", "GitLens  Supercharged")));
+
+        assertEquals(Arrays.asList("gitlens"), names(service.suggest("  GITLENS  su", 10)));
+        assertEquals(Arrays.asList("gitlens"), names(service.suggest("superch", 10)));
+        assertTrue(service.suggest("   ", 10).isEmpty());
+        assertTrue(service.suggest("git", 0).isEmpty());
+    }
+
+    private Extension extension(long id, String name, String displayName) {
+        var publisher = new Publisher();
+        publisher.setName("publisher");
+        var latest = new ExtensionVersion();
+        latest.setDisplayName(displayName);
+        var extension = new Extension();
+        extension.setId(id);
+        extension.setName(name);
+        extension.setPublisher(publisher);
+        extension.setLatest(latest);
+        return extension;
+    }
+
+    private List<String> names(List<Suggestion> suggestions) {
+        return suggestions.stream().map(s -> s.name).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,102 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.storage;
+
+import static io.typefox.extreg.storage.DatabaseFileStorage.CHUNK_SIZE;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.typefox.extreg.entities.ExtensionBinary;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatabaseFileStorageTest {
+
+    private byte[] content;
+    // The start positions of all fetched chunks, counted from 1 like in SQL
+    private List<Integer> fetched;
+    private DatabaseFileStorage storage;
+
+    @BeforeEach
+    public void setup() {
+        content = new byte[2 * CHUNK_SIZE + 100];
+        new Random(42).nextBytes(content);
+        fetched = new ArrayList<>();
+        storage = new DatabaseFileStorage();
+        storage.jdbcTemplate = new JdbcTemplate() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+                assertEquals(byte[].class, requiredType);
+                var from = (Integer) args[0];
+                var length = (Integer) args[1];
+                fetched.add(from);
+                var start = Math.min(from - 1, content.length);
+                return (T) Arrays.copyOfRange(content, start, Math.min(start + length, content.length));
+            }
+        };
+    }
+
+    @Test
+    public void testReadInChunks() throws IOException {
+        try (var stream = load(content.length).getInputStream()) {
+            assertArrayEquals(content, stream.readAllBytes());
+        }
+        assertEquals(Arrays.asList(1, CHUNK_SIZE + 1, 2 * CHUNK_SIZE + 1), fetched);
+    }
+
+    @Test
+    public void testSingleBytes() throws IOException {
+        try (var stream = load(content.length).getInputStream()) {
+            assertEquals(0, stream.available());
+            stream.skip(CHUNK_SIZE - 1);
+            assertEquals(content[CHUNK_SIZE - 1] & 0xff, stream.read());
+            assertEquals(content[CHUNK_SIZE] & 0xff, stream.read());
+            // The chunk starts at the first byte that was read
+            assertEquals(CHUNK_SIZE - 2, stream.available());
+        }
+        assertEquals(Arrays.asList(CHUNK_SIZE), fetched);
+    }
+
+    @Test
+    public void testSkipWithoutFetching() throws IOException {
+        try (var stream = load(content.length).getInputStream()) {
+            assertEquals(2 * CHUNK_SIZE, stream.skip(2 * CHUNK_SIZE));
+            var rest = stream.readAllBytes();
+            assertArrayEquals(Arrays.copyOfRange(content, 2 * CHUNK_SIZE, content.length), rest);
+            assertEquals(0, stream.skip(10));
+        }
+        assertEquals(Arrays.asList(2 * CHUNK_SIZE + 1), fetched);
+    }
+
+    @Test
+    public void testEmptyContent() throws IOException {
+        try (var stream = load(0).getInputStream()) {
+            assertEquals(-1, stream.read());
+            assertEquals(-1, stream.read(new byte[10], 0, 10));
+        }
+        assertTrue(fetched.isEmpty());
+    }
+
+    private Resource load(long size) {
+        var binary = new ExtensionBinary();
+        binary.setHash("0123456789abcdef");
+        binary.setSize(size);
+        return storage.load(binary);
+    }
+
+}
@@ -0,0 +1,161 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.MediaType;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.typefox.extreg.FileContent;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileCacheServiceTest {
+
+    private FileCacheService cache;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        cache = new FileCacheService();
+        cache.maxCacheSize = 1024;
+        cache.maxFileSize = 100;
+        cache.expirySeconds = 600;
+        meterRegistry = new SimpleMeterRegistry();
+        cache.meterRegistry = meterRegistry;
+        cache.init();
+    }
+
+    @Test
+    public void testAdmitOnSecondRequest() throws IOException {
+        var loads = new AtomicInteger();
+        Supplier<FileContent> loader = () -> {
+            loads.incrementAndGet();
+            return file("readme");
+        };
+        assertEquals("readme", read(get("README.md", loader)));
+        assertEquals("readme", read(get("README.md", loader)));
+        assertEquals(2, loads.get());
+        // The file has been admitted with the second request
+        assertEquals("readme", read(get("README.md", loader)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testLargeFileNotAdmitted() {
+        var loads = new AtomicInteger();
+        Supplier<FileContent> loader = () -> {
+            loads.incrementAndGet();
+            return file("x".repeat(101));
+        };
+        for (int i = 0; i < 3; i++) {
+            get("README.md", loader);
+        }
+        assertEquals(3, loads.get());
+        assertEquals(0.0, getCachedBytes());
+    }
+
+    @Test
+    public void testOpenResourceNotAdmitted() {
+        var loads = new AtomicInteger();
+        Supplier<FileContent> loader = () -> {
+            loads.incrementAndGet();
+            var stream = new ByteArrayInputStream("icon".getBytes(StandardCharsets.UTF_8));
+            return new FileContent(new InputStreamResource(stream), 4, MediaType.IMAGE_PNG);
+        };
+        for (int i = 0; i < 3; i++) {
+            get("icon.png", loader);
+        }
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+        var loads = new AtomicInteger();
+        Supplier<FileContent> loader = () -> {
+            loads.incrementAndGet();
+            return file("readme");
+        };
+        for (int i = 0; i < 2; i++) {
+            get("README.md", loader);
+            cache.get("foo", "other", "1.0.0", "README.md", loader);
+        }
+        assertEquals(4, loads.get());
+
+        cache.invalidate("foo", "bar");
+        get("README.md", loader);
+        cache.get("foo", "other", "1.0.0", "README.md", loader);
+        // Only the files of the invalidated extension are loaded again
+        assertEquals(5, loads.get());
+    }
+
+    @Test
+    public void testInvalidateWhileLoading() {
+        var loads = new AtomicInteger();
+        get("README.md", () -> file("old"));
+        get("README.md", () -> {
+            loads.incrementAndGet();
+            // The extension is changed while the previous state is being loaded
+            cache.invalidate("foo", "bar");
+            return file("old");
+        });
+        get("README.md", () -> {
+            loads.incrementAndGet();
+            return file("new");
+        });
+        assertEquals(2, loads.get());
+        // Only the new state has been cached
+        assertEquals(3.0, getCachedBytes());
+    }
+
+    @Test
+    public void testCachedBytes() {
+        Supplier<FileContent> loader = () -> {
+            var file = file("readme");
+            var encoded = file("gz");
+            encoded.setContentEncoding("gzip");
+            file.addEncoding(encoded);
+            return file;
+        };
+        get("README.md", loader);
+        get("README.md", loader);
+        assertEquals(8.0, getCachedBytes());
+
+        cache.invalidate("foo", "bar");
+        assertEquals(0.0, getCachedBytes());
+    }
+
+    private FileContent get(String fileName, Supplier<FileContent> loader) {
+        return cache.get("foo", "bar", "1.0.0", fileName, loader);
+    }
+
+    private FileContent file(String content) {
+        var bytes = content.getBytes(StandardCharsets.UTF_8);
+        return new FileContent(new ByteArrayResource(bytes), bytes.length, MediaType.TEXT_PLAIN);
+    }
+
+    private String read(FileContent file) throws IOException {
+        try (var stream = file.getResource().getInputStream()) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private double getCachedBytes() {
+        return meterRegistry.get("files.cache.bytes").gauge().value();
+    }
+
+}
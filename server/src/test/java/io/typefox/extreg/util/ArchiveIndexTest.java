@@ -0,0 +1,53 @@
+/********************************************************************************
+ * Copyright (c) 2019 TypeFox
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ ********************************************************************************/
+package io.typefox.extreg.util;
+
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.ZipFile;
+
+import com.google.common.io.ByteStreams;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class ArchiveIndexTest {
+
+    @Test
+    public void testTodoTree() throws Exception {
+        var file = Files.createTempFile("todo-tree", ".zip");
+        try {
+            try (var stream = getClass().getResourceAsStream("todo-tree.zip")) {
+                Files.copy(stream, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (var zipFile = new ZipFile(file.toFile())) {
+                var index = new ArchiveIndex(zipFile);
+                assertEquals(24052, index.readEntry("extension/package.json").length);
+                assertEquals(24052, index.readEntry("Extension/Package.JSON").length);
+                assertEquals(8854, index.readEntry("extension\\resources\\todo-tree.png").length);
+                assertNull(index.readEntry("extension/missing.txt"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testReadEntries() throws Exception {
+        var stream = getClass().getResourceAsStream("todo-tree.zip");
+        var bytes = ByteStreams.toByteArray(stream);
+        var entries = ArchiveUtil.readEntries(bytes, Arrays.asList(
+                "extension/PACKAGE.json", "extension\\resources\\todo-tree.png", "extension/missing.txt"));
+        assertEquals(2, entries.size());
+        assertEquals(24052, entries.get("extension/PACKAGE.json").length);
+        assertEquals(8854, entries.get("extension\\resources\\todo-tree.png").length);
+    }
+
+}
@@ -20,6 +20,50 @@ public class SemanticVersionTest {
         assertEquals(0, new SemanticVersion("1.2.3-next.bc11e2c5").compareTo(new SemanticVersion("1.2.3-next.6aa3b0d6")));
         assertEquals(1, new SemanticVersion("1.2.3").compareTo(new SemanticVersion("1.2.3-next.bc11e2c5")));
         assertEquals(1, new SemanticVersion("10.0").compareTo(new SemanticVersion("9.0")));
+        assertEquals(1, new SemanticVersion("1.0beta").compareTo(new SemanticVersion("1.0-beta")));
+        assertEquals(0, new SemanticVersion("1.0-beta").compareTo(new SemanticVersion("1.0-alpha")));
+        assertEquals(1, new SemanticVersion("1.20191231235959").compareTo(new SemanticVersion("1.9999999999")));
+        assertEquals(0, new SemanticVersion("1.0020191231235959").compareTo(new SemanticVersion("1.20191231235959")));
+    }
+
+    @Test
+    public void testSortKey() {
+        assertSortKeyOrder("2.0.0", "1.2.3");
+        assertSortKeyOrder("1.2.4", "1.2.3");
+        assertSortKeyOrder("1.2.3", "1.2.3-next.bc11e2c5");
+        assertSortKeyOrder("10.0", "9.0");
+        assertSortKeyOrder("1.10.0", "1.9.12");
+        assertSortKeyOrder("1.2", "1.2.3");
+        assertEquals(new SemanticVersion("1.2.3-next.bc11e2c5").getSortKey(),
+                new SemanticVersion("1.2.3-next.6aa3b0d6").getSortKey());
+        assertEquals(new SemanticVersion("1.02.3").getSortKey(), new SemanticVersion("1.2.3").getSortKey());
+    }
+
+    @Test
+    public void testSortKeyLongNumbers() {
+        assertSortKeyOrder("1.20191231235959", "1.9999999999");
+        assertSortKeyOrder("1.20191231235960", "1.20191231235959");
+        assertSortKeyOrder("1.100000000000000", "1.99999999999999");
+        assertSortKeyOrder("1.20191231235959", "1.20191231235959-beta");
+        assertEquals(new SemanticVersion("1.0020191231235959").getSortKey(),
+                new SemanticVersion("1.20191231235959").getSortKey());
+    }
+
+    @Test
+    public void testSortKeySuffix() {
+        assertSortKeyOrder("1.0beta", "1.0-beta");
+        assertSortKeyOrder("1.0beta", "1.0.1");
+        assertSortKeyOrder("1.0.1", "1.0-beta");
+        assertSortKeyOrder("1.0", "1.0beta");
+        assertEquals(new SemanticVersion("1.0beta").getSortKey(), new SemanticVersion("1.0alpha").getSortKey());
+        assertEquals(new SemanticVersion("1.0-beta").getSortKey(), new SemanticVersion("1.0+build").getSortKey());
+    }
+
+    private void assertSortKeyOrder(String greater, String smaller) {
+        var greaterVersion = new SemanticVersion(greater);
+        var smallerVersion = new SemanticVersion(smaller);
+        assertTrue(greaterVersion.compareTo(smallerVersion) > 0);
+        assertTrue(greaterVersion.getSortKey().compareTo(smallerVersion.getSortKey()) > 0);
     }
 
 }
\ No newline at end of file
@@ -13,12 +13,14 @@ export interface ExtensionFilter {
     category?: ExtensionCategory;
     size?: number;
     offset?: number;
+    cursor?: string;
     [key: string]: string | number | undefined;
 }
 
 export interface SearchResult {
     readonly error?: string;
     readonly offset: number;
+    readonly cursor?: string;
     readonly extensions: ExtensionRaw[];
 }
 